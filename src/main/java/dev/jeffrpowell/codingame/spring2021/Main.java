@@ -1,30 +1,38 @@
 package dev.jeffrpowell.codingame.spring2021;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.Scanner;
-import java.util.Set;
+import java.util.Random;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.function.BiFunction;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class Main {
+    private static volatile boolean debugEnabled = true;
+
     public static void main(String[] args) {
         Map<Integer, Cell> cellMap = new HashMap<>();
         Map<Integer, Tree> treeMap = new HashMap<>();
         List<Tree> myTrees = new ArrayList<>();
         List<Tree> theirTrees = new ArrayList<>();
-        Scanner in = new Scanner(System.in);
+        InputReader in = new InputReader(System.in);
         int numberOfCells = in.nextInt(); // 37
         for (int i = 0; i < numberOfCells; i++) {
             int index = in.nextInt(); // 0 is the center cell, the next cells spiral outwards
@@ -39,7 +47,10 @@ public class Main {
         }
         cellMap.put(-1, new Cell(-1, -1, -1, -1, -1, -1, -1, -1)); //Edge cells have -1 neighbors
         cellMap.forEach((i, cell) -> cell.populateNeighbors(cellMap));
-        Game game = new Game(cellMap);
+        PlannerMode plannerMode = args.length > 0 ? PlannerMode.valueOf(args[0]) : PlannerMode.HEURISTIC;
+        Game game = new Game(cellMap, plannerMode);
+        OutputWriter out = new OutputWriter(System.out);
+        IntList possibleMoves = new IntList(Simulation.MAX_MOVES);
 
         // game loop
         while (true) {
@@ -69,28 +80,523 @@ public class Main {
                 }
             }
             int numberOfPossibleMoves = in.nextInt();
-            if (in.hasNextLine()) {
-                in.nextLine();
-            }
-            List<String> possibleMoves = new ArrayList<>();
+            possibleMoves.clear();
             for (int i = 0; i < numberOfPossibleMoves; i++) {
-                String possibleMove = in.nextLine();
-                possibleMoves.add(possibleMove);
+                possibleMoves.add(in.nextMove());
             }
             
             // Write an action using System.out.println()
             // To debug: System.err.println("Debug messages...");
             // GROW cellIdx | SEED sourceIdx targetIdx | COMPLETE cellIdx | WAIT <message>
-            System.out.println(game.executeNewTurn(day, nutrients, sun, score, oppSun, oppScore, oppIsWaiting, treeMap, myTrees, theirTrees, possibleMoves));
+            out.writeMove(game.executeNewTurn(day, nutrients, sun, score, oppSun, oppScore, oppIsWaiting, treeMap, myTrees, theirTrees, possibleMoves));
             if (game.isGameOver()) {
                 break;
             }
         }
     }
-    
+
+    /**
+     * Everything the bot has to say on stderr goes through here, so the {@link Arena} can keep it quiet.
+     */
+    static void debug(String message) {
+        if (debugEnabled) {
+            System.err.println(message);
+        }
+    }
+
+    /**
+     * Byte-level stand-in for Scanner: reads stdin through one reusable buffer and parses ints by hand.
+     * Only blocks for more input when the buffer runs dry, so a line the referee hasn't finished sending is simply waited on.
+     */
+    private static class InputReader {
+        private final InputStream stream;
+        private final byte[] buffer;
+        private int length;
+        private int pointer;
+
+        public InputReader(InputStream stream) {
+            this.stream = stream;
+            this.buffer = new byte[1 << 16];
+            this.length = 0;
+            this.pointer = 0;
+        }
+
+        private int read() {
+            if (pointer == length) {
+                try {
+                    length = stream.read(buffer, 0, buffer.length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                pointer = 0;
+                if (length <= 0) {
+                    length = 0;
+                    return -1;
+                }
+            }
+            return buffer[pointer++] & 0xFF;
+        }
+
+        public int nextInt() {
+            int c = read();
+            while (c != -1 && c <= ' ') {
+                c = read();
+            }
+            if (c == -1) {
+                throw new NoSuchElementException();
+            }
+            boolean negative = c == '-';
+            if (negative) {
+                c = read();
+            }
+            if (c < '0' || c > '9') {
+                throw new InputMismatchException("Expected a number, got '" + (char) c + "'");
+            }
+            int result = 0;
+            while (c >= '0' && c <= '9') {
+                result = result * 10 + (c - '0');
+                c = read();
+            }
+            if (c > ' ') {
+                throw new InputMismatchException("Expected a number, got '" + (char) c + "' after " + result);
+            }
+            return negative ? -result : result;
+        }
+
+        /**
+         * One of the referee's possible moves, e.g. "SEED 3 10", read straight into a packed {@link Simulation} move.
+         * The action is told apart by its first letter.
+         */
+        public int nextMove() {
+            int c = read();
+            while (c != -1 && c <= ' ') {
+                c = read();
+            }
+            if (c == -1) {
+                throw new NoSuchElementException();
+            }
+            int first = c;
+            while (c > ' ') {
+                c = read();
+            }
+            switch (first) {
+                case 'W':
+                    return Simulation.WAIT;
+                case 'C':
+                    return Simulation.move(Simulation.COMPLETE, nextInt(), 0);
+                case 'G':
+                    return Simulation.move(Simulation.GROW, nextInt(), 0);
+                case 'S':
+                    int source = nextInt();
+                    return Simulation.move(Simulation.SEED, source, nextInt());
+                default:
+                    throw new InputMismatchException("Expected a move, got '" + (char) first + "'");
+            }
+        }
+    }
+
+    /**
+     * Output side of {@link InputReader}: writes each packed move, flavor text and all, into one reusable byte buffer
+     * and hands it to stdout in a single write.
+     */
+    private static class OutputWriter {
+        private final PrintStream stream;
+        private final byte[] buffer;
+        private int length;
+
+        public OutputWriter(PrintStream stream) {
+            this.stream = stream;
+            this.buffer = new byte[256];
+            this.length = 0;
+        }
+
+        public void writeMove(int move) {
+            Action action = Action.of(move);
+            length = 0;
+            append(action.nameBytes);
+            if (action != Action.WAIT) {
+                append(' ');
+                append(Simulation.cell(move));
+            }
+            if (action == Action.SEED) {
+                append(' ');
+                append(Simulation.target(move));
+            }
+            append(' ');
+            append(action.flavorBytes);
+            if (action != Action.WAIT) {
+                append(Simulation.cell(move));
+            }
+            if (action == Action.SEED) {
+                append(action.flavorBeforeTargetBytes);
+                append(Simulation.target(move));
+            }
+            append('\n');
+            stream.write(buffer, 0, length);
+            stream.flush();
+        }
+
+        private void append(byte[] bytes) {
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private void append(char c) {
+            buffer[length++] = (byte) c;
+        }
+
+        private void append(int value) {
+            if (value >= 10) {
+                append(value / 10);
+            }
+            buffer[length++] = (byte) ('0' + value % 10);
+        }
+    }
+
+    /**
+     * Self-play without the referee: two Game configurations play each other in-process, with a {@link Simulation}
+     * handing each bot the same inputs main() would read and deciding what their moves do. Games run on a ForkJoinPool,
+     * two per board so each side gets both seats, and at the end it prints the first configuration's win rate with a
+     * 95% Wilson interval (draws count half) and how many games a second it got through.
+     * Boards are built like the referee's: three rings of cells, soil poorer towards the edge, a few symmetric holes,
+     * and two size-1 trees each on the outer ring, mirrored through the center. The planners still run on their own
+     * time budgets, so MCTS and BEAM games take as long as they would online; HEURISTIC ones go much faster.
+     * java -cp target/classes 'dev.jeffrpowell.codingame.spring2021.Main$Arena' HEURISTIC BEAM [games] [seed] [threads]
+     */
+    static class Arena {
+        private static final int[][] CUBE_DIRECTIONS = {{1, -1, 0}, {1, 0, -1}, {0, 1, -1}, {-1, 1, 0}, {-1, 0, 1}, {0, -1, 1}};
+        private static final int RINGS = 3;
+        private static final int MAX_HOLE_PAIRS = 5;
+        private static final int STARTING_TREES = 2;
+        private static final int STARTING_NUTRIENTS = 20;
+        private static final double Z_95 = 1.96;
+        private final PlannerMode[] modes;
+        private final long seed;
+
+        public Arena(PlannerMode first, PlannerMode second, long seed) {
+            this.modes = new PlannerMode[]{first, second};
+            this.seed = seed;
+        }
+
+        public static void main(String[] args) {
+            PlannerMode first = PlannerMode.valueOf(args[0]);
+            PlannerMode second = PlannerMode.valueOf(args[1]);
+            int games = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : 2021;
+            int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+            debugEnabled = false;
+            Arena arena = new Arena(first, second, seed);
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long start = System.nanoTime();
+            List<ForkJoinTask<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < games; i++) {
+                int gameIndex = i;
+                results.add(pool.submit(() -> arena.play(gameIndex)));
+            }
+            int wins = 0;
+            int draws = 0;
+            for (ForkJoinTask<Integer> result : results) {
+                int outcome = result.join();
+                if (outcome > 0) {
+                    wins++;
+                }
+                else if (outcome == 0) {
+                    draws++;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            pool.shutdown();
+            double winRate = (wins + draws / 2.0) / games;
+            double[] interval = wilsonInterval(winRate, games);
+            System.out.printf("%s vs %s: %d wins, %d draws, %d losses in %d games%n", first, second, wins, draws, games - wins - draws, games);
+            System.out.printf("win rate %.1f%% (95%% CI %.1f%% - %.1f%%)%n", 100 * winRate, 100 * interval[0], 100 * interval[1]);
+            System.out.printf("%.2f games/s on %d threads%n", games / seconds, threads);
+        }
+
+        static double[] wilsonInterval(double p, int n) {
+            double z2 = Z_95 * Z_95;
+            double center = (p + z2 / (2 * n)) / (1 + z2 / n);
+            double margin = Z_95 * Math.sqrt(p * (1 - p) / n + z2 / (4.0 * n * n)) / (1 + z2 / n);
+            return new double[]{Math.max(0, center - margin), Math.min(1, center + margin)};
+        }
+
+        /**
+         * Positive if the first configuration won, negative if the second did, 0 for a draw. Games 2k and 2k+1 share
+         * a board, with the first configuration as player 0 in the even one and player 1 in the odd one.
+         */
+        public int play(int gameIndex) {
+            Random random = new Random(seed + gameIndex / 2);
+            Map<Integer, Cell> cellMap = generateBoard(random);
+            BoardGeometry geometry = new BoardGeometry(cellMap);
+            Bitboard startingTrees = startingTrees(cellMap, random);
+            int startingSun = startingTrees.sunPointsComingUp(geometry, startingTrees.mine, -1, 1);
+            Simulation referee = new Simulation(geometry);
+            referee.load(startingTrees, 0, STARTING_NUTRIENTS, startingSun, 0, startingSun, 0, false);
+            int firstSeat = gameIndex % 2;
+            Game[] bots = new Game[2];
+            bots[firstSeat] = new Game(cellMap, modes[0]);
+            bots[1 - firstSeat] = new Game(cellMap, modes[1]);
+            int[] moveBuffer = new int[Simulation.MAX_MOVES];
+            while (!referee.isGameOver()) {
+                int myMove = referee.waiting[0] ? Simulation.WAIT : askForMove(bots[0], cellMap, referee, 0, moveBuffer);
+                int oppMove = referee.waiting[1] ? Simulation.WAIT : askForMove(bots[1], cellMap, referee, 1, moveBuffer);
+                referee.play(myMove, oppMove);
+            }
+            int result = Integer.signum(referee.result());
+            return firstSeat == 0 ? result : -result;
+        }
+
+        /**
+         * One turn of input from the player's side of the board, the way main() would have read it. A move the
+         * referee wouldn't accept is played as WAIT.
+         */
+        private int askForMove(Game bot, Map<Integer, Cell> cellMap, Simulation referee, int player, int[] moveBuffer) {
+            Map<Integer, Tree> treeMap = new HashMap<>();
+            List<Tree> myTrees = new ArrayList<>();
+            List<Tree> theirTrees = new ArrayList<>();
+            for (long trees = referee.owner[0] | referee.owner[1]; trees != 0; trees &= trees - 1) {
+                int cellIndex = Long.numberOfTrailingZeros(trees);
+                long bit = 1L << cellIndex;
+                boolean isMine = (referee.owner[player] & bit) != 0;
+                Tree tree = new Tree(cellMap.get(cellIndex), referee.treeSize(cellIndex), isMine, (referee.dormant & bit) != 0);
+                treeMap.put(cellIndex, tree);
+                if (isMine) {
+                    myTrees.add(tree);
+                }
+                else {
+                    theirTrees.add(tree);
+                }
+            }
+            int count = referee.legalMoves(player, moveBuffer);
+            IntList possibleMoves = new IntList(count);
+            for (int i = 0; i < count; i++) {
+                possibleMoves.add(moveBuffer[i]);
+            }
+            int other = 1 - player;
+            int move = bot.executeNewTurn(referee.day, referee.nutrients, referee.sun[player], referee.score[player], referee.sun[other], referee.score[other], referee.waiting[other], treeMap, myTrees, theirTrees, possibleMoves);
+            return referee.isLegal(player, move) ? move : Simulation.WAIT;
+        }
+
+        /**
+         * The referee's layout: the center cell, then each ring in turn starting from its east end and going around
+         * counterclockwise, with neighbors listed in {@link HexDirection} order.
+         */
+        static Map<Integer, Cell> generateBoard(Random random) {
+            List<int[]> coordinates = new ArrayList<>();
+            coordinates.add(new int[]{0, 0, 0});
+            for (int ring = 1; ring <= RINGS; ring++) {
+                int[] coordinate = step(new int[]{0, 0, 0}, 0, ring);
+                for (int orientation = 0; orientation < CUBE_DIRECTIONS.length; orientation++) {
+                    for (int count = 0; count < ring; count++) {
+                        coordinates.add(coordinate);
+                        coordinate = step(coordinate, (orientation + 2) % CUBE_DIRECTIONS.length, 1);
+                    }
+                }
+            }
+            Map<Integer, Integer> indices = new HashMap<>();
+            int[] richness = new int[coordinates.size()];
+            for (int i = 0; i < coordinates.size(); i++) {
+                int[] coordinate = coordinates.get(i);
+                indices.put(key(coordinate), i);
+                int ring = Math.max(Math.abs(coordinate[0]), Math.max(Math.abs(coordinate[1]), Math.abs(coordinate[2])));
+                richness[i] = Math.min(3, RINGS + 1 - ring);
+            }
+            int firstHoleCandidate = 7;
+            int holePairs = random.nextInt(MAX_HOLE_PAIRS + 1);
+            for (int i = 0; i < holePairs; i++) {
+                int hole = firstHoleCandidate + random.nextInt(coordinates.size() - firstHoleCandidate);
+                richness[hole] = 0;
+                richness[indices.get(key(opposite(coordinates.get(hole))))] = 0;
+            }
+            Map<Integer, Cell> cellMap = new HashMap<>();
+            for (int i = 0; i < coordinates.size(); i++) {
+                int[] neighbors = new int[CUBE_DIRECTIONS.length];
+                for (int d = 0; d < CUBE_DIRECTIONS.length; d++) {
+                    neighbors[d] = indices.getOrDefault(key(step(coordinates.get(i), d, 1)), -1);
+                }
+                cellMap.put(i, new Cell(i, richness[i], neighbors[0], neighbors[1], neighbors[2], neighbors[3], neighbors[4], neighbors[5]));
+            }
+            cellMap.put(-1, new Cell(-1, -1, -1, -1, -1, -1, -1, -1));
+            cellMap.forEach((i, cell) -> cell.populateNeighbors(cellMap));
+            return cellMap;
+        }
+
+        private static Bitboard startingTrees(Map<Integer, Cell> cellMap, Random random) {
+            int outerRingStart = BoardGeometry.NUM_CELLS - 6 * RINGS;
+            int outerRingSize = 6 * RINGS;
+            Bitboard board = new Bitboard();
+            int placed = 0;
+            while (placed < STARTING_TREES) {
+                int cellIndex = outerRingStart + random.nextInt(outerRingSize);
+                int oppositeIndex = outerRingStart + (cellIndex - outerRingStart + outerRingSize / 2) % outerRingSize;
+                long bits = (1L << cellIndex) | (1L << oppositeIndex);
+                if (cellMap.get(cellIndex).getRichness() == 0 || ((board.mine | board.theirs) & bits) != 0) {
+                    continue;
+                }
+                board.place(new Tree(cellMap.get(cellIndex), 1, true, false));
+                board.place(new Tree(cellMap.get(oppositeIndex), 1, false, false));
+                placed++;
+            }
+            return board;
+        }
+
+        private static int[] step(int[] coordinate, int direction, int distance) {
+            int[] delta = CUBE_DIRECTIONS[direction];
+            return new int[]{coordinate[0] + delta[0] * distance, coordinate[1] + delta[1] * distance, coordinate[2] + delta[2] * distance};
+        }
+
+        private static int[] opposite(int[] coordinate) {
+            return new int[]{-coordinate[0], -coordinate[1], -coordinate[2]};
+        }
+
+        /**
+         * Unique for every coordinate up to one step off the board, so neighbor lookups can miss cleanly.
+         */
+        private static int key(int[] coordinate) {
+            int width = 2 * RINGS + 3;
+            return (coordinate[0] + RINGS + 1) * width + coordinate[1] + RINGS + 1;
+        }
+    }
+
+    /**
+     * Consistency checks for the pieces the planners trust blindly, standing in for unit tests since the bot has to
+     * stay a single file. Random games on {@link Arena} boards check after every turn that the board is well formed,
+     * that {@link Simulation#legalMoves} lists exactly the moves {@link Simulation#isLegal} accepts, and that the
+     * incremental hash matches {@link Zobrist#hash}; each game is then undone turn by turn back to the start, checking
+     * every position against a copy taken on the way down. Last, the {@link TranspositionTable} has to hand back what
+     * was stored, miss on another key in the same slot, and miss on a slot torn between two writes.
+     * Throws on the first mismatch, otherwise prints what it went through.
+     * java -cp target/classes 'dev.jeffrpowell.codingame.spring2021.Main$SelfCheck' [games] [seed]
+     */
+    static class SelfCheck {
+        private static final int TABLE_LOG2_SIZE = 10;
+        private static final int TABLE_PROBES = 100_000;
+
+        public static void main(String[] args) {
+            int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+            long seed = args.length > 1 ? Long.parseLong(args[1]) : 2021;
+            Random random = new Random(seed);
+            int turns = 0;
+            for (int i = 0; i < games; i++) {
+                turns += checkGame(random);
+            }
+            checkTranspositionTable(random);
+            System.out.printf("%d games, %d turns and %d table probes checked%n", games, turns, TABLE_PROBES);
+        }
+
+        private static int checkGame(Random random) {
+            Map<Integer, Cell> cellMap = Arena.generateBoard(random);
+            BoardGeometry geometry = new BoardGeometry(cellMap);
+            Bitboard startingTrees = Arena.startingTrees(cellMap, random);
+            int startingSun = startingTrees.sunPointsComingUp(geometry, startingTrees.mine, -1, 1);
+            Simulation simulation = new Simulation(geometry);
+            simulation.load(startingTrees, 0, Arena.STARTING_NUTRIENTS, startingSun, 0, startingSun, 0, false);
+            List<Simulation> history = new ArrayList<>();
+            int[] moves = new int[Simulation.MAX_MOVES];
+            boolean[] listed = new boolean[Simulation.move(Simulation.GROW, 63, 63) + 1];
+            while (!simulation.isGameOver()) {
+                checkBoard(simulation, geometry);
+                checkLegalMoves(simulation, 0, moves, listed);
+                checkLegalMoves(simulation, 1, moves, listed);
+                Simulation copy = new Simulation(geometry);
+                copy.copyFrom(simulation);
+                history.add(copy);
+                simulation.play(simulation.randomMove(0, moves, random), simulation.randomMove(1, moves, random));
+                check(simulation.hash == Zobrist.hash(simulation), "incremental hash drifted on day " + simulation.day);
+            }
+            checkBoard(simulation, geometry);
+            for (int turn = history.size() - 1; turn >= 0; turn--) {
+                simulation.undo();
+                check(simulation.matches(history.get(turn)), "undo didn't restore turn " + turn);
+                check(simulation.hash == history.get(turn).hash, "undo didn't restore the hash of turn " + turn);
+            }
+            return history.size();
+        }
+
+        private static void checkBoard(Simulation simulation, BoardGeometry geometry) {
+            long trees = simulation.owner[0] | simulation.owner[1];
+            check((simulation.owner[0] & simulation.owner[1]) == 0, "a cell has two owners");
+            check((trees & ~geometry.usableCells()) == 0, "a tree stands on unusable soil");
+            long sized = 0;
+            for (int treeSize = 0; treeSize < simulation.size.length; treeSize++) {
+                check((sized & simulation.size[treeSize]) == 0, "a tree has two sizes");
+                sized |= simulation.size[treeSize];
+            }
+            check(sized == trees, "tree sizes don't match tree owners");
+            check((simulation.dormant & ~trees) == 0, "a dormant cell has no tree");
+            check(simulation.sun[0] >= 0 && simulation.sun[1] >= 0, "negative sun");
+            check(simulation.nutrients >= 0, "negative nutrients");
+        }
+
+        private static void checkLegalMoves(Simulation simulation, int player, int[] moves, boolean[] listed) {
+            Arrays.fill(listed, false);
+            int count = simulation.legalMoves(player, moves);
+            for (int i = 0; i < count; i++) {
+                check(!listed[moves[i]], "listed twice: " + Simulation.describe(moves[i]));
+                listed[moves[i]] = true;
+            }
+            check(simulation.isLegal(player, Simulation.WAIT) && listed[Simulation.WAIT], "WAIT must always be legal");
+            for (int cellIndex = 0; cellIndex < BoardGeometry.NUM_CELLS; cellIndex++) {
+                checkAgrees(simulation, player, Simulation.move(Simulation.COMPLETE, cellIndex, 0), listed);
+                checkAgrees(simulation, player, Simulation.move(Simulation.GROW, cellIndex, 0), listed);
+                for (int target = 0; target < BoardGeometry.NUM_CELLS; target++) {
+                    checkAgrees(simulation, player, Simulation.move(Simulation.SEED, cellIndex, target), listed);
+                }
+            }
+        }
+
+        private static void checkAgrees(Simulation simulation, int player, int move, boolean[] listed) {
+            check(simulation.isLegal(player, move) == listed[move], "legalMoves and isLegal disagree on " + Simulation.describe(move) + " for player " + player + " on day " + simulation.day);
+        }
+
+        private static void checkTranspositionTable(Random random) {
+            TranspositionTable table = new TranspositionTable(TABLE_LOG2_SIZE);
+            int slots = 1 << TABLE_LOG2_SIZE;
+            for (int i = 0; i < TABLE_PROBES; i++) {
+                long key = random.nextLong();
+                long value = nonMiss(random);
+                long otherKey = key + slots * (1 + random.nextInt(1 << 20));
+                long otherValue = nonMiss(random);
+                table.store(key, value);
+                check(table.probe(key) == value, "stored value not found");
+                check(table.probe(otherKey) == TranspositionTable.MISS, "another key in the same slot hit");
+                table.store(otherKey, otherValue);
+                check(table.probe(otherKey) == otherValue, "replacing value not found");
+                check(table.probe(key) == TranspositionTable.MISS, "replaced key still hit");
+                int slot = (int) key & (slots - 1);
+                table.keys[slot] = key ^ value;
+                if (value != otherValue) {
+                    check(table.probe(key) == TranspositionTable.MISS, "torn slot read as the first write");
+                    check(table.probe(otherKey) == TranspositionTable.MISS, "torn slot read as the second write");
+                }
+            }
+        }
+
+        private static long nonMiss(Random random) {
+            long value = random.nextLong();
+            return value == TranspositionTable.MISS ? 0 : value;
+        }
+
+        private static void check(boolean condition, String message) {
+            if (!condition) {
+                throw new IllegalStateException(message);
+            }
+        }
+    }
+
     static class Game { 
+        /**
+         * The endgame solver is the main user and stores a few tens of thousands of positions in a turn; the beam only
+         * marks the states it keeps. 1 << 17 slots is 2MB for both arrays together.
+         */
+        private static final int TRANSPOSITION_TABLE_LOG2_SIZE = 17;
         private final Map<Integer, Cell> cellMap;
-        private final MoveManager moveManager;
+        private final BoardGeometry geometry;
+        private final Bitboard board;
+        private final TranspositionTable transpositionTable;
+        private final Planner planner;
+        private final EndgameSolver endgameSolver;
+        private long turnStartNanos;
         private int day;
         private int nutrients;
         private int sun;
@@ -104,13 +610,29 @@ public class Main {
         private List<Tree> theirTrees;
         private boolean gameOver;
 
-        public Game(Map<Integer, Cell> cellMap) {
+        public Game(Map<Integer, Cell> cellMap, PlannerMode plannerMode) {
             this.cellMap = cellMap;
+            this.geometry = new BoardGeometry(cellMap);
+            this.board = new Bitboard();
             this.day = -1;
-            this.moveManager = new MoveManager(this);
+            this.transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_LOG2_SIZE);
+            this.planner = createPlanner(plannerMode);
+            this.endgameSolver = new EndgameSolver(this);
+        }
+
+        private Planner createPlanner(PlannerMode plannerMode) {
+            switch (plannerMode) {
+                case MCTS:
+                    return new MctsPlanner(this);
+                case BEAM:
+                    return new BeamPlanner(this, BeamPlanner.DEFAULT_WIDTH);
+                case HEURISTIC:
+                default:
+                    return new MoveManager(this);
+            }
         }
 
-        public String executeNewTurn(
+        public int executeNewTurn(
             int day,
             int nutrients,
             int sun,
@@ -121,8 +643,9 @@ public class Main {
             Map<Integer, Tree> treeMap, 
             List<Tree> myTrees, 
             List<Tree> theirTrees, 
-            List<String> possibleMoves
+            IntList possibleMoves
         ) {
+            this.turnStartNanos = System.nanoTime();
             this.day = day;
             this.nutrients = nutrients;
             this.sun = sun;
@@ -134,92 +657,77 @@ public class Main {
             this.treeMap = treeMap;
             this.myTrees = myTrees;
             this.theirTrees = theirTrees;
-            Move nextMove = moveManager.nextMove(day, possibleMoves);
-            if (day == 23 && nextMove.action == Action.WAIT) {
+            this.board.clear();
+            treeMap.values().forEach(board::place);
+            int nextMove = endgameSolver.nextMove(day, possibleMoves);
+            if (nextMove == EndgameSolver.UNSOLVED) {
+                nextMove = planner.nextMove(day, possibleMoves);
+                if (!possibleMoves.contains(nextMove)) {
+                    debug("Planner picked illegal " + Simulation.describe(nextMove));
+                    nextMove = Simulation.WAIT;
+                    planner.reset();
+                }
+            }
+            else {
+                planner.reset();
+            }
+            if (day == 23 && nextMove == Simulation.WAIT) {
                 gameOver = true;
             }
-            return nextMove.toFlavorfulString();
+            return nextMove;
         }
         
         public boolean isGameOver() {
             return gameOver;
         }
+
+        public void loadSimulation(Simulation simulation) {
+            simulation.load(board, day, nutrients, sun, score, oppSun, oppScore, oppIsWaiting);
+        }
         
         public HexDirection getShadeDirection(int day) {
-            return HexDirection.values()[day % 6];
+            return HexDirection.ofSunOnDay(day);
         }
         
         public int numberOfTrees(int size, boolean isMine) {
-            if (isMine) {
-                return Long.valueOf(myTrees.stream().filter(tree -> tree.getSize() == size).count()).intValue();
-            }
-            else {
-                return Long.valueOf(theirTrees.stream().filter(tree -> tree.getSize() == size).count()).intValue();
-            }
+            return Long.bitCount(board.size[size] & (isMine ? board.mine : board.theirs));
         }
         
         public int numberOfSunPointsComingUp(Tree tree, int startDay, int numberOfDays) {
-            int totalPoints = 0;
-            int treeSize = tree.getSize();
-            for (int i = 1; i <= numberOfDays; i++) {
-                final int loopVar = i;
-                Set<Cell> shadedCellsThisDay = treeMap.values().stream()
-                    .map(t -> t.whichCellsAreShaded(getShadeDirection(startDay + loopVar)))
-                    .flatMap(Set::stream)
-                    .filter(shadeSource -> shadeSource.getTreeSize() >= tree.getSize())
-                    .map(ShadeSource::getCell)
-                    .collect(Collectors.toSet());
-                if (!shadedCellsThisDay.contains(tree.getCell())) {
-                    totalPoints += treeSize;
-                }
-            }
-            return totalPoints;
+            return tree.getSize() * numberOfDaysInShade(tree, startDay, numberOfDays, false);
         }
         
         public int numberOfSpookyPointsComingUpForTree(Tree tree, int startDay, int numberOfDays) {
-            int totalSpookyPoints = 0;
-            int treeSize = tree.getSize();
-            for (int i = 1; i <= numberOfDays; i++) {
-                final int loopVar = i;
-                Set<Cell> shadedCellsThisDay = treeMap.values().stream()
-                    .map(t -> t.whichCellsAreShaded(getShadeDirection(startDay + loopVar)))
-                    .flatMap(Set::stream)
-                    .filter(shadeSource -> shadeSource.getTreeSize() >= tree.getSize())
-                    .map(ShadeSource::getCell)
-                    .collect(Collectors.toSet());
-                if (shadedCellsThisDay.contains(tree.getCell())) {
-                    totalSpookyPoints += treeSize;
+            return tree.getSize() * numberOfDaysInShade(tree, startDay, numberOfDays, true);
+        }
+
+        private int numberOfDaysInShade(Tree tree, int startDay, int numberOfDays, boolean inShade) {
+            int days = 0;
+            long treeBit = 1L << tree.getCell().getIndex();
+            for (HexDirection direction : HexDirection.VALUES) {
+                if (((board.spookyCells(geometry, direction, tree.getSize()) & treeBit) != 0) == inShade) {
+                    days += direction.daysInHorizon(startDay, numberOfDays);
                 }
             }
-            return totalSpookyPoints;
+            return days;
         }
         
         public int numberOfOpponentSpookyPointsCausedByTree(Tree tree, int startDay, int numberOfDays) {
-            int totalSpookyPoints = 0;
-            for (int i = 1; i <= numberOfDays; i++) {
-                Set<ShadeSource> shadedCells = tree.whichCellsAreShaded(getShadeDirection(startDay + i));
-                totalSpookyPoints += shadedCells.stream()
-                    .filter(shadeSource -> treeMap.containsKey(shadeSource.getCell().getIndex()))
-                    .map(shadeSource -> treeMap.get(shadeSource.getCell().getIndex()))
-                    .filter(t -> !t.isIsMine())
-                    .map(Tree::getSize)
-                    .filter(size -> size <= tree.getSize())
-                    .reduce(0, Math::addExact);
-            }
-            return totalSpookyPoints;
+            return spookyPointsCausedByTree(tree, board.theirs, startDay, numberOfDays);
         }
         
         public int numberOfSelfSpookyPointsCausedByTree(Tree tree, int startDay, int numberOfDays) {
+            return spookyPointsCausedByTree(tree, board.mine, startDay, numberOfDays);
+        }
+
+        private int spookyPointsCausedByTree(Tree tree, long victims, int startDay, int numberOfDays) {
             int totalSpookyPoints = 0;
-            for (int i = 1; i <= numberOfDays; i++) {
-                Set<ShadeSource> shadedCells = tree.whichCellsAreShaded(getShadeDirection(startDay + i));
-                totalSpookyPoints += shadedCells.stream()
-                    .filter(shadeSource -> treeMap.containsKey(shadeSource.getCell().getIndex()))
-                    .map(shadeSource -> treeMap.get(shadeSource.getCell().getIndex()))
-                    .filter(Tree::isIsMine)
-                    .map(Tree::getSize)
-                    .filter(size -> size <= tree.getSize())
-                    .reduce(0, Math::addExact);
+            for (HexDirection direction : HexDirection.VALUES) {
+                int days = direction.daysInHorizon(startDay, numberOfDays);
+                if (days > 0) {
+                    long shadedCells = geometry.shadow(direction, tree.getSize(), tree.getCell().getIndex());
+                    totalSpookyPoints += days * board.sizePoints(shadedCells & victims, tree.getSize());
+                }
             }
             return totalSpookyPoints;
         }
@@ -300,18 +808,47 @@ public class Main {
         }
     }
     
-    static class MoveManager {
+    static enum PlannerMode {
+        HEURISTIC, MCTS, BEAM;
+    }
+
+    interface Planner {
+        /**
+         * Time a search may use from {@link Game#turnStartNanos}. CodinGame allows 1000ms on the first turn and 100ms
+         * after, but its clock starts before the input is read, and the first turn also pays for allocating and
+         * warming up the search, so both leave real margin.
+         */
+        long FIRST_TURN_BUDGET_NANOS = 800_000_000L;
+        long TURN_BUDGET_NANOS = 85_000_000L;
+
+        int nextMove(int day, IntList possibleMoves);
+
+        /**
+         * Called when this turn's move didn't come from the planner, so anything it planned or remembered from earlier
+         * turns may no longer hold.
+         */
+        default void reset() {
+        }
+    }
+
+    static class MoveManager implements Planner {
         enum State {PLAN_COMPLETE, COMPLETE, PLAN_GROW3, GROW3, PLAN_GROW2, GROW2, PLAN_GROW1, GROW1, PLAN_SEED, SEED, WAIT;}
-        private final List<Move> moveBuffer;
+        private final IntList moveBuffer;
         private final Game game;
         private final BudgetManager budgetManager;
+        private final Simulation simulation;
+        private final SeedEvaluator seedEvaluator;
+        private final int[] legalMoveBuffer;
         private int lastNutrientGrab;
         private State state;
         
         public MoveManager(Game game) {
-            this.moveBuffer = new ArrayList<>();
+            this.moveBuffer = new IntList();
             this.game = game;
             this.budgetManager = new BudgetManager();
+            this.simulation = new Simulation(game.geometry);
+            this.seedEvaluator = new SeedEvaluator(game.geometry);
+            this.legalMoveBuffer = new int[Simulation.MAX_MOVES];
             this.lastNutrientGrab = 21;
             this.state = State.PLAN_COMPLETE;
         }
@@ -322,7 +859,7 @@ public class Main {
         //If day < 18 && num3Trees < 4, don't complete unless you can grow a 2-tree to replace it immediately afterward
         //While nutrients > 5, Complete the tree that will get the most shade in the next 2 turns
         
-        private void planCompletes(List<Move> possibleCompletes, int budget) {
+        private void planCompletes(IntList possibleCompletes, int budget) {
             if (budget == 0 || possibleCompletes.isEmpty()) {
                 return;
             }
@@ -332,38 +869,44 @@ public class Main {
             }
             if (targetNum >= possibleCompletes.size()) {
                 simulateCompletes(possibleCompletes);
-                moveBuffer.addAll(possibleCompletes.stream().sorted(Comparator.comparing(move -> game.cellMap.get(move.index).getRichness())).collect(Collectors.toList()));
+                possibleCompletes.sortBy(this::richnessOfTree);
+                moveBuffer.addAll(possibleCompletes);
                 return;
             }
-            SortedMap<Integer, List<Move>> spookyPoints = possibleCompletes.stream()
-                .collect(Collectors.toMap(
-                    move -> game.numberOfSelfSpookyPointsCausedByTree(game.treeMap.get(move.index).growTree(), game.day, 6) + game.numberOfSpookyPointsComingUpForTree(game.treeMap.get(move.index), game.day, 6) - game.numberOfOpponentSpookyPointsCausedByTree(game.treeMap.get(move.index), game.day, 6),
-                    move -> {List<Move> singletonList = new ArrayList<>(); singletonList.add(move); return singletonList;},
-                    (a, b) -> {a.addAll(b); return a;},
-                    () -> new TreeMap<>(Comparator.<Integer>reverseOrder()))
-                );
-            List<Move> bestShadowUtilization = new ArrayList<>();
+            SortedMap<Integer, IntList> spookyPoints = new TreeMap<>(Comparator.<Integer>reverseOrder());
+            for (int i = 0; i < possibleCompletes.size(); i++) {
+                int move = possibleCompletes.get(i);
+                Tree tree = game.treeMap.get(Simulation.cell(move));
+                int points = game.numberOfSelfSpookyPointsCausedByTree(tree.growTree(), game.day, 6) + game.numberOfSpookyPointsComingUpForTree(tree, game.day, 6) - game.numberOfOpponentSpookyPointsCausedByTree(tree, game.day, 6);
+                spookyPoints.computeIfAbsent(points, key -> new IntList()).add(move);
+            }
+            IntList bestShadowUtilization = new IntList();
             while(bestShadowUtilization.size() < targetNum) {
-                List<Move> nextBatchOfMoves = spookyPoints.remove(spookyPoints.firstKey());
+                IntList nextBatchOfMoves = spookyPoints.remove(spookyPoints.firstKey());
                 if (bestShadowUtilization.size() + nextBatchOfMoves.size() > targetNum) {
                     //secondary sort: prefer completing more rich soil
-                    bestShadowUtilization.addAll(nextBatchOfMoves.stream()
-                        .sorted(Comparator.comparing((Move move) -> game.cellMap.get(move.index).getRichness()).reversed())
-                        .limit(targetNum - bestShadowUtilization.size())
-                        .collect(Collectors.toList()));
+                    nextBatchOfMoves.sortBy(move -> -richnessOfTree(move));
+                    bestShadowUtilization.addAll(nextBatchOfMoves, targetNum - bestShadowUtilization.size());
                 }
                 else {
                     bestShadowUtilization.addAll(nextBatchOfMoves);
                 }
             }
             simulateCompletes(bestShadowUtilization);
-            moveBuffer.addAll(bestShadowUtilization.stream().sorted(Comparator.comparing(move -> game.cellMap.get(move.index).getRichness())).collect(Collectors.toList()));
+            bestShadowUtilization.sortBy(this::richnessOfTree);
+            moveBuffer.addAll(bestShadowUtilization);
+        }
+
+        private int richnessOfTree(int move) {
+            return game.cellMap.get(Simulation.cell(move)).getRichness();
         }
 
-        private void simulateCompletes(List<Move> completeMoves) {
-            for (Move move : completeMoves) {
-                Tree choppedTree = game.treeMap.remove(move.index);
+        private void simulateCompletes(IntList completeMoves) {
+            for (int i = 0; i < completeMoves.size(); i++) {
+                int cellIndex = Simulation.cell(completeMoves.get(i));
+                Tree choppedTree = game.treeMap.remove(cellIndex);
                 game.myTrees.remove(choppedTree);
+                game.board.remove(cellIndex);
             }
         }
         
@@ -393,7 +936,7 @@ public class Main {
             return baseCost * numUpgrades + numUpgrades - 1;
         }
         
-        private void planGrowsForSize(List<Move> possibleGrows, int targetTreeSize) {
+        private void planGrowsForSize(IntList possibleGrows, int targetTreeSize) {
             if (game.sun == 0 || possibleGrows.isEmpty() || game.day > getLastDayForGrow(targetTreeSize)) {
                 return;
             }
@@ -416,28 +959,26 @@ public class Main {
                 moveBuffer.addAll(possibleGrows);
                 return;
             }
-            SortedMap<Integer, List<Move>> spookyPoints = possibleGrows.stream()
-                .collect(Collectors.toMap(
-                    move -> {
-                            Tree theUpcomingTree = game.treeMap.get(move.index).growTree();
-                            if (game.numberOfSpookyPointsComingUpForTree(theUpcomingTree, game.day, 1) == theUpcomingTree.getSize()) {
-                                return Integer.MIN_VALUE;
-                            }
-                            return game.numberOfOpponentSpookyPointsCausedByTree(theUpcomingTree, game.day, 6) - game.numberOfSpookyPointsComingUpForTree(theUpcomingTree, game.day, 6) - game.numberOfSelfSpookyPointsCausedByTree(theUpcomingTree, game.day, 6);
-                        },
-                    move -> {List<Move> singletonList = new ArrayList<>(); singletonList.add(move); return singletonList;},
-                    (a, b) -> {a.addAll(b); return a;},
-                    () -> new TreeMap<>(Comparator.<Integer>naturalOrder()))
-                );
-            List<Move> bestShadowUtilization = new ArrayList<>();
+            SortedMap<Integer, IntList> spookyPoints = new TreeMap<>(Comparator.<Integer>naturalOrder());
+            for (int i = 0; i < possibleGrows.size(); i++) {
+                int move = possibleGrows.get(i);
+                Tree theUpcomingTree = game.treeMap.get(Simulation.cell(move)).growTree();
+                int points;
+                if (game.numberOfSpookyPointsComingUpForTree(theUpcomingTree, game.day, 1) == theUpcomingTree.getSize()) {
+                    points = Integer.MIN_VALUE;
+                }
+                else {
+                    points = game.numberOfOpponentSpookyPointsCausedByTree(theUpcomingTree, game.day, 6) - game.numberOfSpookyPointsComingUpForTree(theUpcomingTree, game.day, 6) - game.numberOfSelfSpookyPointsCausedByTree(theUpcomingTree, game.day, 6);
+                }
+                spookyPoints.computeIfAbsent(points, key -> new IntList()).add(move);
+            }
+            IntList bestShadowUtilization = new IntList();
             while(bestShadowUtilization.size() < maxMoves) {
-                List<Move> nextBatchOfMoves = spookyPoints.remove(spookyPoints.firstKey());
+                IntList nextBatchOfMoves = spookyPoints.remove(spookyPoints.firstKey());
                 if (bestShadowUtilization.size() + nextBatchOfMoves.size() > maxMoves) {
                     //secondary sort: prefer growing in more rich soil
-                    bestShadowUtilization.addAll(nextBatchOfMoves.stream()
-                        .sorted(Comparator.comparing((Move move) -> game.cellMap.get(move.index).getRichness()).reversed())
-                        .limit(maxMoves - bestShadowUtilization.size())
-                        .collect(Collectors.toList()));
+                    nextBatchOfMoves.sortBy(move -> -richnessOfTree(move));
+                    bestShadowUtilization.addAll(nextBatchOfMoves, (int) (maxMoves - bestShadowUtilization.size()));
                 }
                 else {
                     bestShadowUtilization.addAll(nextBatchOfMoves);
@@ -447,79 +988,60 @@ public class Main {
             moveBuffer.addAll(bestShadowUtilization);
         }
         
-        private void simulateGrows(List<Move> growMoves) {
-            for (Move move : growMoves) {
-                Tree oldTree = game.treeMap.remove(move.index);
+        private void simulateGrows(IntList growMoves) {
+            for (int i = 0; i < growMoves.size(); i++) {
+                int cellIndex = Simulation.cell(growMoves.get(i));
+                Tree oldTree = game.treeMap.remove(cellIndex);
                 Tree newTree = oldTree.growTree();
-                game.treeMap.put(move.index, newTree);
+                game.treeMap.put(cellIndex, newTree);
                 game.myTrees.set(game.myTrees.indexOf(oldTree), newTree);
+                game.board.grow(cellIndex);
             }
         }
         
-        private void planSeed(List<Move> possibleSeeds) {
+        private void planSeed(IntList possibleSeeds) {
             if (shouldWeSkipSeed() || possibleSeeds.isEmpty()) {
                 return;
             }
-            SortedMap<Integer, List<Move>> shadowScores = possibleSeeds.stream()
-                .collect(Collectors.toMap(
-                    this::scoreSeedPlacementForShadow,
-                    move -> {List<Move> singletonList = new ArrayList<>(); singletonList.add(move); return singletonList;},
-                    (a, b) -> {a.addAll(b); return a;},
-                    () -> new TreeMap<>(Comparator.<Integer>reverseOrder()))
-                );
-            List<Move> bestShadowMoves = shadowScores.get(shadowScores.firstKey());
-            moveBuffer.add(bestShadowMoves.stream().sorted(Comparator.comparing(this::scoreSeedPlacementForArea).reversed()).findFirst().get());
+            moveBuffer.add(seedEvaluator.bestSeed(simulation, possibleSeeds, game.turnStartNanos + SeedEvaluator.BUDGET_NANOS));
         }
         
         private boolean shouldWeSkipSeed() {
             return game.day <= 1 || game.day > 18 || game.myTrees.stream().anyMatch(t -> t.getSize() == 0);
         }
-    
-        private int scoreSeedPlacementForShadow(Move move) {
-            Tree futureGrowth = new Tree(game.cellMap.get(move.index2), 0, true, false);
-            if (game.numberOfSpookyPointsComingUpForTree(futureGrowth, game.day, 3) == 3) {
-                return Integer.MIN_VALUE;
-            };
-            futureGrowth = futureGrowth.growTree();
-            int size1ShadowScore = game.numberOfOpponentSpookyPointsCausedByTree(futureGrowth, game.day + 1, 6) - game.numberOfSelfSpookyPointsCausedByTree(futureGrowth, game.day + 1, 6) - game.numberOfSpookyPointsComingUpForTree(futureGrowth, game.day + 1, 6);
-            futureGrowth = futureGrowth.growTree();
-            int size2ShadowScore = game.numberOfOpponentSpookyPointsCausedByTree(futureGrowth, game.day + 2, 6) - game.numberOfSelfSpookyPointsCausedByTree(futureGrowth, game.day + 2, 6) - game.numberOfSpookyPointsComingUpForTree(futureGrowth, game.day + 2, 6);
-            futureGrowth = futureGrowth.growTree();
-            int size3ShadowScore = game.numberOfOpponentSpookyPointsCausedByTree(futureGrowth, game.day + 3, 6) - game.numberOfSelfSpookyPointsCausedByTree(futureGrowth, game.day + 3, 6) - game.numberOfSpookyPointsComingUpForTree(futureGrowth, game.day + 3, 6);
-            return size1ShadowScore + size2ShadowScore + size3ShadowScore;
-        }
         
-        private int scoreSeedPlacementForArea(Move move) {
-            boolean stillSearching = true;
-            int distanceToNearestTree = 0;
-            Set<Cell> cells = new HashSet<>();
-            cells.add(game.cellMap.get(move.index2));
-            while (stillSearching) {
-                distanceToNearestTree++;
-                cells.addAll(cells.stream()
-                    .map(Cell::getNeighbors)
-                    .map(Map::values)
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toSet()));
-                stillSearching = cells.stream()
-                    .filter(cell -> game.treeMap.containsKey(cell.index))
-                    .map(cell -> game.treeMap.get(cell.index))
-                    .noneMatch(Tree::isIsMine);
-            }
-            int bonus = 0;
-            if (distanceToNearestTree == 2) {
-                bonus += 3;
-            }
-            if (game.treeMap.get(move.index).getSize() == 3) {
-                bonus++;
-            }
-            if (game.day > 12 && game.cellMap.get(move.index2).getRichness() == 3) {
-                bonus++;
-            }
-            return bonus;
+        /**
+         * Our legal moves straight from the board, before any of the planning below starts simulating on it. The
+         * referee's list is only used here to check the generator against it; if they ever disagree, the referee wins.
+         */
+        private IntList generateLegalMoves(IntList possibleMoves) {
+            game.loadSimulation(simulation);
+            int count = simulation.legalMoves(0, legalMoveBuffer);
+            int[] sortedGenerated = Arrays.copyOf(legalMoveBuffer, count);
+            int[] sortedReferee = possibleMoves.toArray();
+            Arrays.sort(sortedGenerated);
+            Arrays.sort(sortedReferee);
+            IntList legalMoves = new IntList(count);
+            if (!Arrays.equals(sortedGenerated, sortedReferee)) {
+                debug("Generated " + count + " moves but the referee sent " + possibleMoves.size() + ", using the referee's");
+                legalMoves.addAll(possibleMoves);
+                return legalMoves;
+            }
+            for (int i = 0; i < count; i++) {
+                legalMoves.add(legalMoveBuffer[i]);
+            }
+            return legalMoves;
         }
         
-        public Move nextMove(int day, List<String> possibleMoves) {
+        @Override
+        public void reset() {
+            moveBuffer.clear();
+            state = State.PLAN_COMPLETE;
+        }
+
+        @Override
+        public int nextMove(int day, IntList possibleMoves) {
+            IntList legalMoves = generateLegalMoves(possibleMoves);
             switch (state) {
                 /* ------
                     This switch is designed to be very slippery. If you don't have a move at your current state, you should eagerly move on to the next state to find the next best move
@@ -528,11 +1050,11 @@ public class Main {
                 case PLAN_COMPLETE:
                     moveBuffer.clear();
                     int budget = budgetManager.planCompleteBudget(day, game.nutrients, lastNutrientGrab, game.sun, game.score, game.oppScore, game.numberOfTrees(3, false), game.numberOfTrees(3, true), game.myTrees.stream().filter(tree -> tree.getSize() == 3).collect(Collectors.groupingBy(tree -> tree.getCell().getRichness(), Collectors.reducing(0, t -> 1, Math::addExact))));
-                    planCompletes(possibleMoves.stream().map(Move::new).filter(move -> move.getAction() == Action.COMPLETE).collect(Collectors.toList()), budget);
+                    planCompletes(legalMoves.filter(move -> Simulation.action(move) == Simulation.COMPLETE), budget);
                     state = State.COMPLETE;
                 case COMPLETE:
                     if (!moveBuffer.isEmpty()) {
-                        Move nextMove = moveBuffer.remove(0);
+                        int nextMove = moveBuffer.removeFirst();
                         lastNutrientGrab = game.nutrients;
                         if (moveBuffer.isEmpty()) {
                             state = State.PLAN_GROW3;
@@ -542,17 +1064,13 @@ public class Main {
                 case PLAN_GROW3: 
                     moveBuffer.clear();
                     planGrowsForSize(
-                        possibleMoves.stream()
-                            .map(Move::new)
-                            .filter(move -> move.getAction() == Action.GROW)
-                            .filter(move -> game.treeMap.get(move.index).getSize() == 2)
-                            .collect(Collectors.toList()),
+                        legalMoves.filter(move -> Simulation.action(move) == Simulation.GROW && game.treeMap.get(Simulation.cell(move)).getSize() == 2),
                         3
                     );
                     state = State.GROW3;
                 case GROW3:
                     if (!moveBuffer.isEmpty()) {
-                        Move nextMove = moveBuffer.remove(0);
+                        int nextMove = moveBuffer.removeFirst();
                         if (moveBuffer.isEmpty()) {
                             state = State.PLAN_GROW2;
                         }
@@ -561,17 +1079,13 @@ public class Main {
                 case PLAN_GROW2:
                     moveBuffer.clear();
                     planGrowsForSize(
-                        possibleMoves.stream()
-                            .map(Move::new)
-                            .filter(move -> move.getAction() == Action.GROW)
-                            .filter(move -> game.treeMap.get(move.index).getSize() == 1)
-                            .collect(Collectors.toList()),
+                        legalMoves.filter(move -> Simulation.action(move) == Simulation.GROW && game.treeMap.get(Simulation.cell(move)).getSize() == 1),
                         2
                     );
                     state = State.GROW2;
                 case GROW2:
                     if (!moveBuffer.isEmpty()) {
-                        Move nextMove = moveBuffer.remove(0);
+                        int nextMove = moveBuffer.removeFirst();
                         if (moveBuffer.isEmpty()) {
                             state = State.PLAN_GROW1;
                         }
@@ -580,17 +1094,13 @@ public class Main {
                 case PLAN_GROW1:
                     moveBuffer.clear();
                     planGrowsForSize(
-                        possibleMoves.stream()
-                            .map(Move::new)
-                            .filter(move -> move.getAction() == Action.GROW)
-                            .filter(move -> game.treeMap.get(move.index).getSize() == 0)
-                            .collect(Collectors.toList()),
+                        legalMoves.filter(move -> Simulation.action(move) == Simulation.GROW && game.treeMap.get(Simulation.cell(move)).getSize() == 0),
                         1
                     );
                     state = State.GROW1;
                 case GROW1:
                     if (!moveBuffer.isEmpty()) {
-                        Move nextMove = moveBuffer.remove(0);
+                        int nextMove = moveBuffer.removeFirst();
                         if (moveBuffer.isEmpty()) {
                             state = State.PLAN_SEED;
                         }
@@ -598,11 +1108,11 @@ public class Main {
                     }
                 case PLAN_SEED:
                     moveBuffer.clear();
-                    planSeed(possibleMoves.stream().map(Move::new).filter(move -> move.getAction() == Action.SEED).collect(Collectors.toList()));
+                    planSeed(legalMoves.filter(move -> Simulation.action(move) == Simulation.SEED));
                     state = State.WAIT;
                 case SEED:
                     if (!moveBuffer.isEmpty()) {
-                        Move nextMove = moveBuffer.remove(0);
+                        int nextMove = moveBuffer.removeFirst();
                         state = State.WAIT;
                         return nextMove;
                     }
@@ -610,188 +1120,1706 @@ public class Main {
                 default:
                     moveBuffer.clear();
                     state = State.PLAN_COMPLETE;
-                    return new Move("WAIT");
+                    return Simulation.WAIT;
             }
         }
     }
     
-    static enum Action {
-        WAIT((i, j) -> "Soak in the sun, my Arbor Army!"),
-        SEED((i, j) -> "#" + i + ", go sneeze on #" + j),
-        COMPLETE((i, j) -> "I release you to Mother Earth, #" + i),
-        GROW((i, j) -> "Let's give some water to #" + i);
-
-        private final BiFunction<Integer, Integer, String> flavorFn;
-
-        private Action(BiFunction<Integer, Integer, String> flavorFn) {
-            this.flavorFn = flavorFn;
-        }
-
-        public String stringify(int index, int index2) {
-            if (index == -1) { //WAIT
-                return name();
-            }
-            return name() + " " + getIndexString(index, index2);
-        }
+    /**
+     * Smitsimax: MCTS for a simultaneous-move game, with one tree per player. Each tree only branches on its own
+     * player's decisions and is scored on its own player's result, and both are walked in lockstep through one
+     * Simulation so their moves get resolved together. A waiting player makes no decision and doesn't use up a node, so
+     * each tree is just the sequence of choices that player actually gets to make. Past the tree both sides play
+     * random moves to the end of day 23, where all the seed moves together count as one choice so they don't swamp
+     * everything else.
+     * Children are the moves that were legal the first time a node was reached. Other paths can arrive at the same node
+     * through different opponent moves, so selection skips anything that isn't legal in the current state; WAIT always
+     * is. Nodes live in flat arrays, so nothing is allocated while searching.
+     * Next turn, the planner looks for the opponent move that takes last turn's root to the state the referee sent, and
+     * if it finds one it carries on from that pair of subtrees instead of starting over.
+     */
+    static class MctsPlanner implements Planner {
+        private static final int MAX_NODES = 1 << 20;
+        private static final double EXPLORATION = 0.7;
+        private final Game game;
+        private final Simulation root;
+        private final Simulation previousRoot;
+        private final Simulation scratch;
+        private final SearchTree[] trees;
+        private final int[] moveBuffer;
+        private final Random random;
+        private int previousMove;
+        private boolean hasPrevious;
+        private boolean firstTurn;
 
-        public String stringifyWithFlavor(int index, int index2) {
-            if (index == -1) { //WAIT
-                return name() + " " + flavorFn.apply(index, index2);
-            }
-            return name() + " " + getIndexString(index, index2) + flavorFn.apply(index, index2);
+        public MctsPlanner(Game game) {
+            this.game = game;
+            this.root = new Simulation(game.geometry);
+            this.previousRoot = new Simulation(game.geometry);
+            this.scratch = new Simulation(game.geometry);
+            this.trees = new SearchTree[]{new SearchTree(), new SearchTree()};
+            this.moveBuffer = new int[Simulation.MAX_MOVES];
+            this.random = new Random(2021);
+            this.hasPrevious = false;
+            this.firstTurn = true;
         }
 
-        private String getIndexString(int index, int index2) {
-            StringBuilder builder = new StringBuilder();
-            if (index > -1) {
-                builder.append(index).append(" ");
-            }
-            if (index2 > -1) {
-                builder.append(index2).append(" ");
-            }
-            return builder.toString();
-        }
-    }
-    
-    static class Move {
-        private static final Pattern MOVE_PATTERN = Pattern.compile("(GROW|COMPLETE|WAIT|SEED) ?(\\d*)? ?(\\d*)?");
-        private final Action action;
-        private final int index;
-        private final int index2;
-        private int score;
-        private boolean scoreCached;
-        
-        public Move(String moveString) {
-            Matcher m = MOVE_PATTERN.matcher(moveString);
-            m.find();
-            this.action = Action.valueOf(m.group(1));
-            this.index = this.action == Action.WAIT ? -1 : Integer.valueOf(m.group(2));
-            this.index2 = this.action == Action.SEED ? Integer.valueOf(m.group(3)) : -1;
-            this.scoreCached = false;
+        @Override
+        public int nextMove(int day, IntList possibleMoves) {
+            long deadline = game.turnStartNanos + (firstTurn ? FIRST_TURN_BUDGET_NANOS : TURN_BUDGET_NANOS);
+            firstTurn = false;
+            game.loadSimulation(root);
+            if (!reuseTrees()) {
+                trees[0].reset();
+                trees[1].reset();
+            }
+            while (System.nanoTime() < deadline) {
+                iterate();
+            }
+            int move = trees[0].mostVisitedLegalChild(root, 0);
+            previousRoot.copyFrom(root);
+            previousMove = move;
+            hasPrevious = true;
+            return move;
         }
 
         @Override
-        public int hashCode() {
-            int hash = 7;
-            hash = 23 * hash + Objects.hashCode(this.action);
-            hash = 23 * hash + this.index;
-            hash = 23 * hash + this.index2;
-            return hash;
+        public void reset() {
+            hasPrevious = false;
         }
-        
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null) {
+
+        private boolean reuseTrees() {
+            if (!hasPrevious || trees[0].nodeCount > MAX_NODES / 2 || trees[1].nodeCount > MAX_NODES / 2) {
                 return false;
             }
-            if (getClass() != obj.getClass()) {
+            int myChild = trees[0].child(trees[0].root, previousMove);
+            if (myChild == -1) {
                 return false;
             }
-            final Move other = (Move) obj;
-            if (this.index != other.index) {
-                return false;
+            if (previousRoot.waiting[1]) {
+                if (!replayMatches(Simulation.WAIT)) {
+                    return false;
+                }
+                trees[0].root = myChild;
+                return true;
             }
-            if (this.index2 != other.index2) {
-                return false;
+            SearchTree opponent = trees[1];
+            int first = opponent.firstChild[opponent.root];
+            for (int child = first; child < first + opponent.childCount[opponent.root]; child++) {
+                if (replayMatches(opponent.moves[child])) {
+                    trees[0].root = myChild;
+                    opponent.root = child;
+                    return true;
+                }
             }
-            return this.action == other.action;
+            return false;
         }
 
-        public Action getAction() {
-            return action;
+        private boolean replayMatches(int oppMove) {
+            scratch.copyFrom(previousRoot);
+            scratch.play(previousMove, oppMove);
+            return scratch.matches(root);
         }
-        
-        @Override
-        public String toString() {
-            return action.stringify(index, index2);
-        }
-        
-        public String toFlavorfulString() {
-            return action.stringifyWithFlavor(index, index2);
-        }
-    }
-    
-    static enum HexDirection {
-        E,NE,NW,W,SW,SE;
-    }
-    
-    static class Cell {
-        private final int index;
-        private final int richness;
-        private final List<Integer> neighborIndices;
-        private final Map<HexDirection, Cell> neighbors;
 
-        public Cell(int index, int richness, int neigh0, int neigh1, int neigh2, int neigh3, int neigh4, int neigh5) {
-            this.index = index;
-            this.richness = richness;
-            this.neighborIndices = Stream.of(neigh0, neigh1, neigh2, neigh3, neigh4, neigh5).collect(Collectors.toList());
-            this.neighbors = new HashMap<>();
-        }
-
-        public int getIndex() {
-            return index;
+        private void iterate() {
+            scratch.copyFrom(root);
+            trees[0].startDescent();
+            trees[1].startDescent();
+            while (!scratch.isGameOver()) {
+                int myMove = chooseMove(trees[0], 0);
+                int oppMove = chooseMove(trees[1], 1);
+                scratch.play(myMove, oppMove);
+            }
+            int result = scratch.result();
+            double reward = result > 0 ? 1 : result < 0 ? 0 : 0.5;
+            trees[0].backPropagate(reward);
+            trees[1].backPropagate(1 - reward);
         }
 
-        public int getRichness() {
-            return richness;
-        }
-        
-        public void populateNeighbors(Map<Integer, Cell> cellMap) {
-            HexDirection[] orderedDirections = HexDirection.values();
-            for (int i = 0; i < 6; i++) {
-                neighbors.put(orderedDirections[i], cellMap.get(neighborIndices.get(i)));
+        private int chooseMove(SearchTree tree, int player) {
+            if (scratch.waiting[player]) {
+                return Simulation.WAIT;
+            }
+            if (tree.current == -1) {
+                return rolloutMove(player);
+            }
+            if (tree.childCount[tree.current] == 0) {
+                int count = scratch.legalMoves(player, moveBuffer);
+                if (!tree.expand(tree.current, moveBuffer, count)) {
+                    tree.current = -1;
+                    return rolloutMove(player);
+                }
             }
+            int child = tree.select(scratch, player, random.nextInt(tree.childCount[tree.current]));
+            tree.descend(child);
+            return tree.moves[child];
         }
 
-        public Map<HexDirection, Cell> getNeighbors() {
-            return neighbors;
-        }
-    }
-    
-    static class ShadeSource {
-        private final Cell cell;
-        private final int treeSize;
-
-        public ShadeSource(Cell cell, int treeSize) {
-            this.cell = cell;
-            this.treeSize = treeSize;
+        private int rolloutMove(int player) {
+            return scratch.randomMove(player, moveBuffer, random);
         }
 
-        public Cell getCell() {
-            return cell;
-        }
+        private static class SearchTree {
+            private final int[] moves = new int[MAX_NODES];
+            private final int[] firstChild = new int[MAX_NODES];
+            private final int[] childCount = new int[MAX_NODES];
+            private final int[] visits = new int[MAX_NODES];
+            private final double[] wins = new double[MAX_NODES];
+            private final int[] path = new int[(Simulation.LAST_DAY + 1) * (BoardGeometry.NUM_CELLS + 1) + 1];
+            private int pathLength;
+            private int nodeCount;
+            private int root;
+            private int current;
 
-        public int getTreeSize() {
-            return treeSize;
-        }
+            void reset() {
+                nodeCount = 0;
+                root = allocate(Simulation.WAIT);
+            }
 
-        @Override
-        public int hashCode() {
-            int hash = 3;
-            hash = 19 * hash + Objects.hashCode(this.cell);
-            hash = 19 * hash + this.treeSize;
-            return hash;
-        }
+            private int allocate(int move) {
+                int node = nodeCount++;
+                moves[node] = move;
+                childCount[node] = 0;
+                visits[node] = 0;
+                wins[node] = 0;
+                return node;
+            }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
+            boolean expand(int node, int[] legalMoves, int count) {
+                if (nodeCount + count > MAX_NODES) {
+                    return false;
+                }
+                firstChild[node] = nodeCount;
+                for (int i = 0; i < count; i++) {
+                    allocate(legalMoves[i]);
+                }
+                childCount[node] = count;
                 return true;
             }
-            if (obj == null) {
-                return false;
+
+            int child(int node, int move) {
+                int first = firstChild[node];
+                for (int child = first; child < first + childCount[node]; child++) {
+                    if (moves[child] == move) {
+                        return child;
+                    }
+                }
+                return -1;
             }
-            if (getClass() != obj.getClass()) {
-                return false;
+
+            void startDescent() {
+                current = root;
+                pathLength = 0;
+                path[pathLength++] = root;
+            }
+
+            /**
+             * UCB1 over the children that are legal right now. An unvisited one wins straight away; offset picks where
+             * the scan starts so those get tried in random order.
+             */
+            int select(Simulation simulation, int player, int offset) {
+                int first = firstChild[current];
+                int count = childCount[current];
+                double logVisits = Math.log(visits[current] + 1);
+                int best = first;
+                double bestValue = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < count; i++) {
+                    int child = first + (i + offset) % count;
+                    if (!simulation.isLegal(player, moves[child])) {
+                        continue;
+                    }
+                    if (visits[child] == 0) {
+                        return child;
+                    }
+                    double value = wins[child] / visits[child] + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+                    if (value > bestValue) {
+                        bestValue = value;
+                        best = child;
+                    }
+                }
+                return best;
+            }
+
+            void descend(int child) {
+                path[pathLength++] = child;
+                current = visits[child] == 0 ? -1 : child;
+            }
+
+            void backPropagate(double reward) {
+                for (int i = 0; i < pathLength; i++) {
+                    visits[path[i]]++;
+                    wins[path[i]] += reward;
+                }
+            }
+
+            int mostVisitedLegalChild(Simulation simulation, int player) {
+                int best = Simulation.WAIT;
+                int bestVisits = -1;
+                int first = firstChild[root];
+                for (int child = first; child < first + childCount[root]; child++) {
+                    if (visits[child] > bestVisits && simulation.isLegal(player, moves[child])) {
+                        bestVisits = visits[child];
+                        best = moves[child];
+                    }
+                }
+                return best;
+            }
+        }
+    }
+    
+    /**
+     * Scores a position for one player, in sun: 3 per point of score, the sun in hand, and the sun that player's trees
+     * collect over the rest of the game minus what the other player's do, with today's shade. A tree that can still
+     * reach size 3 and be completed before the game ends is also worth about what went into growing it, and a size 3
+     * tree a fifth of what completing it would score today.
+     */
+    static class PositionEvaluator {
+        private static final int[] TREE_VALUE = {1, 2, 5, 12};
+        private static final int COMPLETE_VALUE_DIVISOR = 5;
+        private final BoardGeometry geometry;
+        private final Bitboard scratchBoard;
+
+        public PositionEvaluator(BoardGeometry geometry) {
+            this.geometry = geometry;
+            this.scratchBoard = new Bitboard();
+        }
+
+        public int evaluate(Simulation state, int player) {
+            state.copyTo(scratchBoard);
+            int daysLeft = Math.max(0, Simulation.LAST_DAY - state.day);
+            int value = 3 * state.score[player] + state.sun[player]
+                + scratchBoard.sunPointsComingUp(geometry, state.owner[player], state.day, daysLeft)
+                - scratchBoard.sunPointsComingUp(geometry, state.owner[1 - player], state.day, daysLeft);
+            for (int size = 0; size < TREE_VALUE.length; size++) {
+                if (daysLeft > 3 - size) {
+                    value += TREE_VALUE[size] * Long.bitCount(state.owner[player] & state.size[size]);
+                }
+            }
+            if (daysLeft > 0) {
+                value += 3 * state.nutrients / COMPLETE_VALUE_DIVISOR * Long.bitCount(state.owner[player] & state.size[3]);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Picks where to plant a seed by playing out each candidate in turn, one after another. Every candidate is played
+     * against the same PLAYOUTS random streams, so they're compared on the same luck and the differences come from
+     * where the seed went; nothing else carries over between candidates. Each playout plants the seed, grows it whenever it's awake and affordable, and otherwise plays random moves for both
+     * sides for PLAYOUT_DAYS days; the {@link PositionEvaluator} scores where that leaves us, which counts the sun our
+     * trees are set to collect past the end of it. On top of that a seed keeps the old placement bonuses: two cells from
+     * our nearest tree, thrown by a size 3 tree, or on rich soil late in the game, read off the geometry's distance table.
+     * Candidates are played out best bonus first, and once BUDGET_NANOS of the turn is gone the rest are left out, so
+     * a crowded late board falls back on the bonuses alone.
+     */
+    static class SeedEvaluator {
+        static final long BUDGET_NANOS = 50_000_000L;
+        private static final int PLAYOUTS = 4;
+        private static final int PLAYOUT_DAYS = 6;
+        private final BoardGeometry geometry;
+        private final PositionEvaluator evaluator;
+        private final Simulation playout;
+        private final int[] moveBuffer;
+        private final long[] playoutSeeds;
+        private final Random seedSource;
+        private final Random random;
+
+        public SeedEvaluator(BoardGeometry geometry) {
+            this.geometry = geometry;
+            this.evaluator = new PositionEvaluator(geometry);
+            this.playout = new Simulation(geometry);
+            this.moveBuffer = new int[Simulation.MAX_MOVES];
+            this.playoutSeeds = new long[PLAYOUTS];
+            this.seedSource = new Random(2021);
+            this.random = new Random();
+        }
+
+        /**
+         * The best of seeds for us from state, among the ones there was time to play out before the deadline. Reorders
+         * seeds by placement bonus; the first one wins ties, and is the answer if there was no time at all.
+         */
+        public int bestSeed(Simulation state, IntList seeds, long deadline) {
+            for (int p = 0; p < PLAYOUTS; p++) {
+                playoutSeeds[p] = seedSource.nextLong();
+            }
+            seeds.sortBy(move -> -placementBonus(state, move));
+            int bestMove = seeds.get(0);
+            int bestValue = Integer.MIN_VALUE;
+            for (int i = 0; i < seeds.size() && System.nanoTime() < deadline; i++) {
+                int move = seeds.get(i);
+                int value = PLAYOUTS * placementBonus(state, move);
+                for (int p = 0; p < PLAYOUTS; p++) {
+                    random.setSeed(playoutSeeds[p]);
+                    value += playOut(state, move);
+                }
+                if (value > bestValue) {
+                    bestValue = value;
+                    bestMove = move;
+                }
+            }
+            return bestMove;
+        }
+
+        private int placementBonus(Simulation state, int move) {
+            int target = Simulation.target(move);
+            int bonus = 0;
+            if (geometry.nearestDistance(target, state.owner[0]) == 2) {
+                bonus += 3;
+            }
+            if (state.treeSize(Simulation.cell(move)) == 3) {
+                bonus++;
+            }
+            if (state.day > 12 && (geometry.richness(3) & (1L << target)) != 0) {
+                bonus++;
+            }
+            return bonus;
+        }
+
+        private int playOut(Simulation state, int seed) {
+            playout.copyFrom(state);
+            playout.play(seed, playout.randomMove(1, moveBuffer, random));
+            int grow = Simulation.move(Simulation.GROW, Simulation.target(seed), 0);
+            int lastDay = Math.min(Simulation.LAST_DAY, state.day + PLAYOUT_DAYS);
+            while (playout.day <= lastDay) {
+                int myMove = playout.isLegal(0, grow) ? grow : playout.randomMove(0, moveBuffer, random);
+                playout.play(myMove, playout.randomMove(1, moveBuffer, random));
+            }
+            return evaluator.evaluate(playout, 0);
+        }
+    }
+
+    /**
+     * Guesses the opponent's moves for the rest of today by letting them play greedily while we wait: each step they
+     * take whichever move leaves them the best {@link PositionEvaluator} score, and they WAIT once nothing beats
+     * standing pat. It gets BUDGET_NANOS, about a tenth of a turn, and hands back whatever it has by then.
+     */
+    static class OpponentModel {
+        private static final long BUDGET_NANOS = 8_000_000L;
+        private final Simulation simulation;
+        private final PositionEvaluator evaluator;
+        private final int[] moveBuffer;
+        private final IntList predictedMoves;
+
+        public OpponentModel(BoardGeometry geometry) {
+            this.simulation = new Simulation(geometry);
+            this.evaluator = new PositionEvaluator(geometry);
+            this.moveBuffer = new int[Simulation.MAX_MOVES];
+            this.predictedMoves = new IntList();
+        }
+
+        /**
+         * The opponent's expected moves from this state to the end of the day, WAIT included. Empty if they're
+         * already waiting. The list is reused by the next call.
+         */
+        public IntList predictToday(Simulation state) {
+            long deadline = System.nanoTime() + BUDGET_NANOS;
+            predictedMoves.clear();
+            simulation.copyFrom(state);
+            int day = simulation.day;
+            while (!simulation.isGameOver() && !simulation.waiting[1] && simulation.day == day && System.nanoTime() < deadline) {
+                int move = greedyMove();
+                predictedMoves.add(move);
+                simulation.play(Simulation.WAIT, move);
+            }
+            return predictedMoves;
+        }
+
+        private int greedyMove() {
+            int count = simulation.legalMoves(1, moveBuffer);
+            int bestMove = Simulation.WAIT;
+            int bestValue = evaluator.evaluate(simulation, 1);
+            for (int i = 0; i < count; i++) {
+                int move = moveBuffer[i];
+                if (move == Simulation.WAIT) {
+                    continue;
+                }
+                simulation.play(Simulation.WAIT, move);
+                int value = evaluator.evaluate(simulation, 1);
+                simulation.undo();
+                if (value > bestValue) {
+                    bestValue = value;
+                    bestMove = move;
+                }
+            }
+            return bestMove;
+        }
+    }
+
+    /**
+     * Plans the rest of today as one ordered sequence of our moves. Each layer of the beam tries every legal move
+     * from every surviving state in the Simulation, so grow costs going up and nutrients dropping between our own
+     * COMPLETEs come for free, and keeps the best width states. A sequence ends when it WAITs; that rolls the
+     * Simulation into tomorrow, and the best finished state so far decides which first move to play.
+     * The opponent plays the day the {@link OpponentModel} expects, one predicted move alongside each of ours, so their
+     * shade and their COMPLETEs draining the nutrients show up in our scores; once we WAIT they finish their list before
+     * the day rolls over. States are scored with the {@link PositionEvaluator}.
+     * The whole day is replanned every turn, so whatever the opponent did in between gets picked up.
+     */
+    static class BeamPlanner implements Planner {
+        static final int DEFAULT_WIDTH = 64;
+        private static final long BEAM_SALT = Zobrist.mix(9, 0);
+        private final Game game;
+        private final int width;
+        private final PositionEvaluator evaluator;
+        private final OpponentModel opponentModel;
+        private IntList opponentMoves;
+        private Simulation[] beam;
+        private Simulation[] nextBeam;
+        private int[] firstMoves;
+        private int[] nextFirstMoves;
+        private final int[] moveBuffer;
+        private long[] rankedCandidates;
+        private int[] candidateParents;
+        private int[] candidateMoves;
+        private final TranspositionTable table;
+        private long layerStamp;
+        private boolean firstTurn;
+
+        public BeamPlanner(Game game, int width) {
+            this.game = game;
+            this.width = width;
+            this.evaluator = new PositionEvaluator(game.geometry);
+            this.opponentModel = new OpponentModel(game.geometry);
+            this.beam = new Simulation[width];
+            this.nextBeam = new Simulation[width];
+            for (int i = 0; i < width; i++) {
+                beam[i] = new Simulation(game.geometry);
+                nextBeam[i] = new Simulation(game.geometry);
+            }
+            this.firstMoves = new int[width];
+            this.nextFirstMoves = new int[width];
+            this.moveBuffer = new int[Simulation.MAX_MOVES];
+            this.rankedCandidates = new long[width * Simulation.MAX_MOVES];
+            this.candidateParents = new int[width * Simulation.MAX_MOVES];
+            this.candidateMoves = new int[width * Simulation.MAX_MOVES];
+            this.table = game.transpositionTable;
+            this.layerStamp = 0;
+            this.firstTurn = true;
+        }
+
+        @Override
+        public int nextMove(int day, IntList possibleMoves) {
+            long deadline = game.turnStartNanos + (firstTurn ? FIRST_TURN_BUDGET_NANOS : TURN_BUDGET_NANOS);
+            firstTurn = false;
+            return search(deadline);
+        }
+
+        private int search(long deadline) {
+            game.loadSimulation(beam[0]);
+            opponentMoves = opponentModel.predictToday(beam[0]);
+            firstMoves[0] = -1;
+            int beamSize = 1;
+            int bestMove = Simulation.WAIT;
+            int bestValue = Integer.MIN_VALUE;
+            int layers = 0;
+            while (beamSize > 0 && System.nanoTime() < deadline) {
+                int candidates = 0;
+                for (int b = 0; b < beamSize && System.nanoTime() < deadline; b++) {
+                    Simulation state = beam[b];
+                    int count = state.legalMoves(0, moveBuffer);
+                    for (int i = 0; i < count; i++) {
+                        int move = moveBuffer[i];
+                        int plays = playLayer(state, layers, move);
+                        int value = evaluator.evaluate(state, 0);
+                        for (int p = 0; p < plays; p++) {
+                            state.undo();
+                        }
+                        if (move == Simulation.WAIT) {
+                            if (value > bestValue) {
+                                bestValue = value;
+                                bestMove = firstMoves[b] == -1 ? move : firstMoves[b];
+                            }
+                        }
+                        else {
+                            rankedCandidates[candidates] = ((long) value << 32) | candidates;
+                            candidateParents[candidates] = b;
+                            candidateMoves[candidates] = move;
+                            candidates++;
+                        }
+                    }
+                }
+                beamSize = selectNextBeam(candidates, layers);
+                layers++;
+            }
+            return bestMove;
+        }
+
+        /**
+         * Fills nextBeam with the best candidates, skipping ones that reach a state already kept (two grows done in
+         * either order), then swaps it in. Returns the new beam size.
+         * States kept this layer are marked in the transposition table with a stamp no earlier layer used.
+         */
+        private int selectNextBeam(int candidates, int layer) {
+            Arrays.sort(rankedCandidates, 0, candidates);
+            layerStamp++;
+            int size = 0;
+            for (int i = candidates - 1; i >= 0 && size < width; i--) {
+                int candidate = (int) rankedCandidates[i];
+                int parent = candidateParents[candidate];
+                Simulation next = nextBeam[size];
+                next.copyFrom(beam[parent]);
+                playLayer(next, layer, candidateMoves[candidate]);
+                long key = next.hash ^ BEAM_SALT;
+                if (table.probe(key) == layerStamp) {
+                    continue;
+                }
+                table.store(key, layerStamp);
+                nextFirstMoves[size] = firstMoves[parent] == -1 ? candidateMoves[candidate] : firstMoves[parent];
+                size++;
+            }
+            Simulation[] swapBeam = beam;
+            beam = nextBeam;
+            nextBeam = swapBeam;
+            int[] swapMoves = firstMoves;
+            firstMoves = nextFirstMoves;
+            nextFirstMoves = swapMoves;
+            return size;
+        }
+
+        /**
+         * Plays our move for this layer against the opponent's predicted one. If ours is the WAIT, the opponent plays
+         * out the rest of their list so the day ends. Returns how many plays that took, for undoing.
+         */
+        private int playLayer(Simulation state, int layer, int move) {
+            state.play(move, opponentMove(state, layer));
+            if (move != Simulation.WAIT) {
+                return 1;
+            }
+            int plays = 1;
+            int day = state.day;
+            while (!state.isGameOver() && state.day == day) {
+                state.play(Simulation.WAIT, opponentMove(state, layer + plays));
+                plays++;
+            }
+            return plays;
+        }
+
+        private int opponentMove(Simulation state, int step) {
+            int move = step < opponentMoves.size() ? opponentMoves.get(step) : Simulation.WAIT;
+            return state.isLegal(1, move) ? move : Simulation.WAIT;
+        }
+    }
+    
+    /**
+     * Zobrist keys for a Simulation: one random key per (owner, size, cell) and per dormant cell, xor'd together, with
+     * the day, nutrients, sun, score and waiting flags mixed in on top. Simulation keeps its hash up to date move by
+     * move; {@link #hash} works it out from scratch.
+     */
+    static class Zobrist {
+        static final int DAY = 1;
+        static final int NUTRIENTS = 2;
+        static final int SUN = 3;
+        static final int SCORE = 5;
+        static final int WAITING = 7;
+        private static final long[][][] TREE_KEYS = new long[2][4][BoardGeometry.NUM_CELLS];
+        private static final long[] DORMANT_KEYS = new long[BoardGeometry.NUM_CELLS];
+
+        static {
+            Random random = new Random(2021);
+            for (int player = 0; player < 2; player++) {
+                for (int size = 0; size < 4; size++) {
+                    for (int cell = 0; cell < BoardGeometry.NUM_CELLS; cell++) {
+                        TREE_KEYS[player][size][cell] = random.nextLong();
+                    }
+                }
+            }
+            for (int cell = 0; cell < BoardGeometry.NUM_CELLS; cell++) {
+                DORMANT_KEYS[cell] = random.nextLong();
+            }
+        }
+
+        static long hash(Simulation simulation) {
+            long hash = 0;
+            for (int player = 0; player < 2; player++) {
+                for (int size = 0; size < 4; size++) {
+                    for (long trees = simulation.owner[player] & simulation.size[size]; trees != 0; trees &= trees - 1) {
+                        hash ^= tree(player, size, Long.numberOfTrailingZeros(trees));
+                    }
+                }
+            }
+            hash ^= dormant(simulation.dormant);
+            hash ^= mix(DAY, simulation.day);
+            hash ^= mix(NUTRIENTS, simulation.nutrients);
+            hash ^= mix(SUN, simulation.sun[0]);
+            hash ^= mix(SUN + 1, simulation.sun[1]);
+            hash ^= mix(SCORE, simulation.score[0]);
+            hash ^= mix(SCORE + 1, simulation.score[1]);
+            hash ^= mix(WAITING, waitingBits(simulation));
+            return hash;
+        }
+
+        static long tree(int player, int size, int cellIndex) {
+            return TREE_KEYS[player][size][cellIndex];
+        }
+
+        static long dormant(long cells) {
+            long hash = 0;
+            for (; cells != 0; cells &= cells - 1) {
+                hash ^= DORMANT_KEYS[Long.numberOfTrailingZeros(cells)];
+            }
+            return hash;
+        }
+
+        static int waitingBits(Simulation simulation) {
+            return (simulation.waiting[0] ? 1 : 0) | (simulation.waiting[1] ? 2 : 0);
+        }
+
+        /**
+         * splitmix64 finalizer over (field, value), standing in for a key table on fields with no fixed range.
+         */
+        static long mix(int field, int value) {
+            long z = ((long) field << 32 | (value & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    /**
+     * Fixed-size, always-replace table from a Zobrist key to one long, kept in two flat arrays so it never allocates.
+     * Each slot holds the key xor'd with its value, so a slot torn by two threads writing at once reads back as a miss
+     * rather than as someone else's answer, and nothing needs a lock. Different searches share one table by salting
+     * their keys. MISS itself can't be stored.
+     */
+    static class TranspositionTable {
+        static final long MISS = Long.MIN_VALUE;
+        private final long[] keys;
+        private final long[] values;
+        private final int mask;
+
+        public TranspositionTable(int log2Size) {
+            this.keys = new long[1 << log2Size];
+            this.values = new long[1 << log2Size];
+            this.mask = (1 << log2Size) - 1;
+        }
+
+        public long probe(long key) {
+            int slot = (int) key & mask;
+            long value = values[slot];
+            return (keys[slot] ^ value) == key ? value : MISS;
+        }
+
+        public void store(long key, long value) {
+            int slot = (int) key & mask;
+            keys[slot] = key ^ value;
+            values[slot] = value;
+        }
+    }
+
+    /**
+     * Exhaustive search over our own moves for the last few days, played out to the end of day 23 and scored on final
+     * score (sun / 3 included), with trees left on the board as the tiebreak.
+     * The opponent is taken to wait. That leaves our own moves, and within a day their order only matters through
+     * costs: completing first makes grows to 3 cheaper, growing bigger trees first keeps each size's cost down, and
+     * growing seeds before seeding makes the seeds cheaper. So every day is searched in that one order, which loses
+     * nothing and cuts out all the permutations. Growing on the last day can't collect anything any more, so it's
+     * skipped, and a seed planted on either of the last two days never gets sun, so only the first one in that order is
+     * tried per step: they're all just another tree for the tiebreak. Final score stays exact; the tree count can come
+     * up one short when that first seed takes the only cell some other tree could have reached.
+     * Results go in the shared transposition table under the Zobrist hash plus the last move played today, so they
+     * carry over between turns.
+     * If the search can't finish by the deadline it gives up for the turn and the regular planner answers instead.
+     */
+    static class EndgameSolver {
+        static final int UNSOLVED = -1;
+        private static final int FIRST_DAY = 21;
+        private static final long BUDGET_NANOS = 60_000_000L;
+        private static final int MAX_DEPTH = (Simulation.LAST_DAY - FIRST_DAY + 1) * (BoardGeometry.NUM_CELLS + 1) + 1;
+        private static final int LAST_KEY_FIELD = 8;
+        private final Game game;
+        private final Simulation simulation;
+        private final int[][] moveBuffers;
+        private final TranspositionTable table;
+        private long deadline;
+        private boolean outOfTime;
+
+        public EndgameSolver(Game game) {
+            this.game = game;
+            this.simulation = new Simulation(game.geometry);
+            this.moveBuffers = new int[MAX_DEPTH][Simulation.MAX_MOVES];
+            this.table = game.transpositionTable;
+        }
+
+        public int nextMove(int day, IntList possibleMoves) {
+            if (day < FIRST_DAY) {
+                return UNSOLVED;
+            }
+            deadline = game.turnStartNanos + BUDGET_NANOS;
+            outOfTime = false;
+            game.loadSimulation(simulation);
+            long result = solve(0, -1);
+            if (outOfTime) {
+                return UNSOLVED;
+            }
+            int move = (int) result;
+            if (!possibleMoves.contains(move)) {
+                debug("Endgame picked illegal " + Simulation.describe(move));
+                return UNSOLVED;
+            }
+            return move;
+        }
+
+        /**
+         * Returns the best value reachable from here in the high 32 bits and the move that gets it in the low 32.
+         */
+        private long solve(int depth, int lastKey) {
+            if (simulation.isGameOver()) {
+                return pack(simulation.finalScore(0) * 64 + Long.bitCount(simulation.owner[0]), Simulation.WAIT);
+            }
+            if (System.nanoTime() > deadline) {
+                outOfTime = true;
+                return pack(Integer.MIN_VALUE, Simulation.WAIT);
+            }
+            long key = simulation.hash ^ Zobrist.mix(LAST_KEY_FIELD, lastKey);
+            long cached = table.probe(key);
+            if (cached != TranspositionTable.MISS) {
+                return cached;
+            }
+            int[] moves = moveBuffers[depth];
+            int count = simulation.legalMoves(0, moves);
+            int bestValue = Integer.MIN_VALUE;
+            int bestMove = Simulation.WAIT;
+            int onlySeed = simulation.day >= Simulation.LAST_DAY - 1 ? firstSeedAfter(moves, count, lastKey) : -1;
+            for (int i = 0; i < count && !outOfTime; i++) {
+                int move = moves[i];
+                int moveKey = move == Simulation.WAIT ? -1 : canonicalKey(move);
+                if (move != Simulation.WAIT && moveKey <= lastKey) {
+                    continue;
+                }
+                if (Simulation.action(move) == Simulation.GROW && simulation.day == Simulation.LAST_DAY) {
+                    continue;
+                }
+                if (onlySeed != -1 && Simulation.action(move) == Simulation.SEED && move != onlySeed) {
+                    continue;
+                }
+                simulation.play(move, Simulation.WAIT);
+                int value = (int) (solve(depth + 1, moveKey) >> 32);
+                simulation.undo();
+                if (value > bestValue) {
+                    bestValue = value;
+                    bestMove = move;
+                }
+            }
+            long result = pack(bestValue, bestMove);
+            if (!outOfTime) {
+                table.store(key, result);
+            }
+            return result;
+        }
+
+        private int firstSeedAfter(int[] moves, int count, int lastKey) {
+            int firstSeed = -1;
+            int firstKey = Integer.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                if (Simulation.action(moves[i]) == Simulation.SEED) {
+                    int key = canonicalKey(moves[i]);
+                    if (key > lastKey && key < firstKey) {
+                        firstKey = key;
+                        firstSeed = moves[i];
+                    }
+                }
+            }
+            return firstSeed;
+        }
+
+        /**
+         * Position of a move in the one order each day gets searched in: completes, grows from the biggest trees
+         * down, then seeds; by cell after that.
+         */
+        private int canonicalKey(int move) {
+            int group;
+            switch (Simulation.action(move)) {
+                case Simulation.COMPLETE:
+                    group = 0;
+                    break;
+                case Simulation.GROW:
+                    group = 3 - simulation.treeSize(Simulation.cell(move));
+                    break;
+                case Simulation.SEED:
+                default:
+                    group = 4;
+                    break;
+            }
+            return group << 12 | Simulation.cell(move) << 6 | Simulation.target(move);
+        }
+
+        private static long pack(int value, int move) {
+            return (long) value << 32 | (move & 0xFFFFFFFFL);
+        }
+    }
+    
+    /**
+     * Numbered like the packed move action codes in {@link Simulation}. Each action's name and flavor text are kept
+     * as bytes so {@link OutputWriter} can copy them straight out.
+     */
+    static enum Action {
+        WAIT("Soak in the sun, my Arbor Army!", ""),
+        SEED("#", ", go sneeze on #"),
+        COMPLETE("I release you to Mother Earth, #", ""),
+        GROW("Let's give some water to #", "");
+
+        private static final Action[] VALUES = values();
+        private final byte[] nameBytes;
+        private final byte[] flavorBytes;
+        private final byte[] flavorBeforeTargetBytes;
+
+        private Action(String flavor, String flavorBeforeTarget) {
+            this.nameBytes = name().getBytes(StandardCharsets.US_ASCII);
+            this.flavorBytes = flavor.getBytes(StandardCharsets.US_ASCII);
+            this.flavorBeforeTargetBytes = flavorBeforeTarget.getBytes(StandardCharsets.US_ASCII);
+        }
+
+        public static Action of(int move) {
+            return VALUES[Simulation.action(move)];
+        }
+    }
+    
+    /**
+     * Growable list of primitive ints, for holding packed moves without boxing them.
+     */
+    static class IntList {
+        private int[] values;
+        private int size;
+
+        public IntList() {
+            this(16);
+        }
+
+        public IntList(int capacity) {
+            this.values = new int[Math.max(1, capacity)];
+            this.size = 0;
+        }
+
+        public void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        public void addAll(IntList other) {
+            addAll(other, other.size);
+        }
+
+        public void addAll(IntList other, int limit) {
+            for (int i = 0; i < Math.min(limit, other.size); i++) {
+                add(other.values[i]);
+            }
+        }
+
+        public int get(int index) {
+            return values[index];
+        }
+
+        public boolean contains(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        public int removeFirst() {
+            int first = values[0];
+            size--;
+            System.arraycopy(values, 1, values, 0, size);
+            return first;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public void clear() {
+            size = 0;
+        }
+
+        public IntList filter(IntPredicate predicate) {
+            IntList filtered = new IntList(size);
+            for (int i = 0; i < size; i++) {
+                if (predicate.test(values[i])) {
+                    filtered.add(values[i]);
+                }
+            }
+            return filtered;
+        }
+
+        /**
+         * Stable insertion sort by ascending key; these lists are a handful of moves long.
+         */
+        public void sortBy(IntUnaryOperator key) {
+            for (int i = 1; i < size; i++) {
+                int value = values[i];
+                int valueKey = key.applyAsInt(value);
+                int j = i - 1;
+                while (j >= 0 && key.applyAsInt(values[j]) > valueKey) {
+                    values[j + 1] = values[j];
+                    j--;
+                }
+                values[j + 1] = value;
+            }
+        }
+    }
+    
+    static enum HexDirection {
+        E,NE,NW,W,SW,SE;
+
+        private static final HexDirection[] VALUES = values();
+
+        public static HexDirection ofSunOnDay(int day) {
+            return VALUES[day % VALUES.length];
+        }
+
+        /**
+         * How many of the numberOfDays days after startDay have the sun coming from this direction.
+         */
+        public int daysInHorizon(int startDay, int numberOfDays) {
+            int offset = Math.floorMod(ordinal() - (startDay + 1), VALUES.length);
+            return numberOfDays / VALUES.length + (offset < numberOfDays % VALUES.length ? 1 : 0);
+        }
+    }
+    
+    static class Cell {
+        private final int index;
+        private final int richness;
+        private final List<Integer> neighborIndices;
+        private final Map<HexDirection, Cell> neighbors;
+
+        public Cell(int index, int richness, int neigh0, int neigh1, int neigh2, int neigh3, int neigh4, int neigh5) {
+            this.index = index;
+            this.richness = richness;
+            this.neighborIndices = Stream.of(neigh0, neigh1, neigh2, neigh3, neigh4, neigh5).collect(Collectors.toList());
+            this.neighbors = new HashMap<>();
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getRichness() {
+            return richness;
+        }
+        
+        public void populateNeighbors(Map<Integer, Cell> cellMap) {
+            HexDirection[] orderedDirections = HexDirection.values();
+            for (int i = 0; i < 6; i++) {
+                neighbors.put(orderedDirections[i], cellMap.get(neighborIndices.get(i)));
+            }
+        }
+
+        public Map<HexDirection, Cell> getNeighbors() {
+            return neighbors;
+        }
+    }
+    
+    /**
+     * Everything about the board layout that never changes, precomputed once from the Cell graph.
+     * shadowCells[cell][direction][distance] is the cell that many steps away in that direction, or -1 off the board;
+     * every shadow calculation reads from it rather than walking Cell neighbors.
+     * shadowMasks[direction][size][cell] is the same information as the set of cells a tree of that size on that cell
+     * shades when the sun comes from that direction. Sizes go up to 4 because the complete planner scores a size-3 tree
+     * as if it were grown once more.
+     * rangeMasks[cell][distance] is every other cell within that many steps, which is where a tree that size can seed.
+     */
+    static class BoardGeometry {
+        static final int NUM_CELLS = 37;
+        static final int MAX_SHADOW_SIZE = 4;
+        static final int MAX_SEED_RANGE = 3;
+        private final int[][][] shadowCells;
+        private final long[][][] shadowMasks;
+        private final long[][][] shadowMasksByCell;
+        private final long[] richnessMasks;
+        private final long[][] rangeMasks;
+        private final int[][] distances;
+        private final long usableCells;
+
+        public BoardGeometry(Map<Integer, Cell> cellMap) {
+            HexDirection[] directions = HexDirection.values();
+            this.shadowCells = new int[NUM_CELLS][directions.length][MAX_SHADOW_SIZE + 1];
+            this.shadowMasks = new long[directions.length][MAX_SHADOW_SIZE + 1][NUM_CELLS];
+            this.shadowMasksByCell = new long[NUM_CELLS][MAX_SHADOW_SIZE + 1][directions.length];
+            this.richnessMasks = new long[4];
+            for (int cellIndex = 0; cellIndex < NUM_CELLS; cellIndex++) {
+                Cell cell = cellMap.get(cellIndex);
+                richnessMasks[cell.getRichness()] |= 1L << cellIndex;
+                for (HexDirection direction : directions) {
+                    Cell currentCell = cell;
+                    shadowCells[cellIndex][direction.ordinal()][0] = cellIndex;
+                    for (int distance = 1; distance <= MAX_SHADOW_SIZE; distance++) {
+                        currentCell = currentCell.getNeighbors().get(direction);
+                        shadowCells[cellIndex][direction.ordinal()][distance] = currentCell.getIndex();
+                    }
+                }
             }
-            final ShadeSource other = (ShadeSource) obj;
-            if (this.treeSize != other.treeSize) {
+            for (int cellIndex = 0; cellIndex < NUM_CELLS; cellIndex++) {
+                for (HexDirection direction : directions) {
+                    long mask = 0;
+                    for (int size = 1; size <= MAX_SHADOW_SIZE; size++) {
+                        int shadedCell = shadowCell(cellIndex, direction, size);
+                        if (shadedCell != -1) {
+                            mask |= 1L << shadedCell;
+                        }
+                        shadowMasks[direction.ordinal()][size][cellIndex] = mask;
+                        shadowMasksByCell[cellIndex][size][direction.ordinal()] = mask;
+                    }
+                }
+            }
+            this.usableCells = richnessMasks[1] | richnessMasks[2] | richnessMasks[3];
+            long[] neighborMasks = new long[NUM_CELLS];
+            for (int cellIndex = 0; cellIndex < NUM_CELLS; cellIndex++) {
+                for (Cell neighbor : cellMap.get(cellIndex).getNeighbors().values()) {
+                    if (neighbor.getIndex() != -1) {
+                        neighborMasks[cellIndex] |= 1L << neighbor.getIndex();
+                    }
+                }
+            }
+            this.rangeMasks = new long[NUM_CELLS][MAX_SEED_RANGE + 1];
+            for (int cellIndex = 0; cellIndex < NUM_CELLS; cellIndex++) {
+                long reached = 1L << cellIndex;
+                for (int distance = 1; distance <= MAX_SEED_RANGE; distance++) {
+                    long next = reached;
+                    for (long frontier = reached; frontier != 0; frontier &= frontier - 1) {
+                        next |= neighborMasks[Long.numberOfTrailingZeros(frontier)];
+                    }
+                    reached = next;
+                    rangeMasks[cellIndex][distance] = reached & ~(1L << cellIndex);
+                }
+            }
+            this.distances = new int[NUM_CELLS][NUM_CELLS];
+            long allCells = (1L << NUM_CELLS) - 1;
+            for (int cellIndex = 0; cellIndex < NUM_CELLS; cellIndex++) {
+                long reached = 1L << cellIndex;
+                for (int distance = 1; reached != allCells; distance++) {
+                    long next = reached;
+                    for (long frontier = reached; frontier != 0; frontier &= frontier - 1) {
+                        next |= neighborMasks[Long.numberOfTrailingZeros(frontier)];
+                    }
+                    for (long ring = next & ~reached; ring != 0; ring &= ring - 1) {
+                        distances[cellIndex][Long.numberOfTrailingZeros(ring)] = distance;
+                    }
+                    reached = next;
+                }
+            }
+        }
+
+        public int shadowCell(int cellIndex, HexDirection direction, int distance) {
+            return shadowCells[cellIndex][direction.ordinal()][distance];
+        }
+
+        public long shadow(HexDirection direction, int treeSize, int cellIndex) {
+            return shadowMasks[direction.ordinal()][treeSize][cellIndex];
+        }
+
+        public long richness(int richness) {
+            return richnessMasks[richness];
+        }
+
+        public long range(int cellIndex, int distance) {
+            return rangeMasks[cellIndex][distance];
+        }
+
+        public long usableCells() {
+            return usableCells;
+        }
+
+        public int distance(int fromCell, int toCell) {
+            return distances[fromCell][toCell];
+        }
+
+        /**
+         * Hex distance from cellIndex to the closest of cells, or Integer.MAX_VALUE if cells is empty.
+         */
+        public int nearestDistance(int cellIndex, long cells) {
+            int nearest = Integer.MAX_VALUE;
+            for (; cells != 0; cells &= cells - 1) {
+                nearest = Math.min(nearest, distances[cellIndex][Long.numberOfTrailingZeros(cells)]);
+            }
+            return nearest;
+        }
+
+        /**
+         * fillShade for all six directions in one pass over the trees: shadedAtLeast[direction][k] gets the cells under
+         * the shadow of a tree of size >= k. Each tree's six shadows sit next to each other in shadowMasksByCell.
+         */
+        public void fillShadeAllDirections(long[] sizeMasks, long[][] shadedAtLeast) {
+            for (long[] shade : shadedAtLeast) {
+                Arrays.fill(shade, 0);
+            }
+            for (int casterSize = 1; casterSize < sizeMasks.length; casterSize++) {
+                for (long casters = sizeMasks[casterSize]; casters != 0; casters &= casters - 1) {
+                    long[] shadows = shadowMasksByCell[Long.numberOfTrailingZeros(casters)][casterSize];
+                    for (int d = 0; d < shadows.length; d++) {
+                        shadedAtLeast[d][casterSize] |= shadows[d];
+                    }
+                }
+            }
+            for (long[] shade : shadedAtLeast) {
+                for (int k = sizeMasks.length - 2; k >= 1; k--) {
+                    shade[k] |= shade[k + 1];
+                }
+            }
+        }
+
+        /**
+         * Fills shadedAtLeast[k] with the cells under the shadow of a tree of size >= k, for the trees in sizeMasks.
+         */
+        public void fillShade(HexDirection direction, long[] sizeMasks, long[] shadedAtLeast) {
+            Arrays.fill(shadedAtLeast, 0);
+            for (int casterSize = 1; casterSize < sizeMasks.length; casterSize++) {
+                long casters = sizeMasks[casterSize];
+                long shadow = 0;
+                while (casters != 0) {
+                    int cellIndex = Long.numberOfTrailingZeros(casters);
+                    shadow |= shadow(direction, casterSize, cellIndex);
+                    casters &= casters - 1;
+                }
+                for (int k = 1; k <= casterSize; k++) {
+                    shadedAtLeast[k] |= shadow;
+                }
+            }
+        }
+    }
+
+    /**
+     * The trees on the board as bitmasks, one bit per cell index: who owns it, how big it is, and whether it's dormant.
+     * Shade only depends on the trees and the sun direction, so the first time any shade is asked for it's worked out
+     * for all six directions at once and kept until the trees change. Every mutator throws that cache away. With every
+     * direction to hand, a horizon of days is just each direction weighted by how many of those days face it.
+     */
+    static class Bitboard {
+        long mine;
+        long theirs;
+        long dormant;
+        final long[] size = new long[4];
+        //shadedAtLeast[direction][k]: cells under the shadow of a tree of size >= k
+        private final long[][] shadedAtLeast = new long[6][4];
+        private boolean shadeCached;
+
+        public void clear() {
+            mine = 0;
+            theirs = 0;
+            dormant = 0;
+            Arrays.fill(size, 0);
+            shadeCached = false;
+        }
+
+        public void set(long mine, long theirs, long dormant, long[] sizeMasks) {
+            this.mine = mine;
+            this.theirs = theirs;
+            this.dormant = dormant;
+            System.arraycopy(sizeMasks, 0, size, 0, size.length);
+            shadeCached = false;
+        }
+
+        public void place(Tree tree) {
+            long bit = 1L << tree.getCell().getIndex();
+            if (tree.isIsMine()) {
+                mine |= bit;
+            }
+            else {
+                theirs |= bit;
+            }
+            if (tree.isIsDormant()) {
+                dormant |= bit;
+            }
+            size[tree.getSize()] |= bit;
+            shadeCached = false;
+        }
+
+        public void remove(int cellIndex) {
+            long keep = ~(1L << cellIndex);
+            mine &= keep;
+            theirs &= keep;
+            dormant &= keep;
+            for (int i = 0; i < size.length; i++) {
+                size[i] &= keep;
+            }
+            shadeCached = false;
+        }
+
+        public void grow(int cellIndex) {
+            long bit = 1L << cellIndex;
+            for (int i = size.length - 2; i >= 0; i--) {
+                if ((size[i] & bit) != 0) {
+                    size[i] &= ~bit;
+                    size[i + 1] |= bit;
+                    shadeCached = false;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Cells where a tree of the given size gets no sun today, i.e. they sit in the shadow of a tree at least as big.
+         */
+        public long spookyCells(BoardGeometry geometry, HexDirection direction, int treeSize) {
+            if (treeSize >= size.length) {
+                return 0;
+            }
+            return shade(geometry)[direction.ordinal()][Math.max(1, treeSize)];
+        }
+
+        private long[][] shade(BoardGeometry geometry) {
+            if (!shadeCached) {
+                geometry.fillShadeAllDirections(size, shadedAtLeast);
+                shadeCached = true;
+            }
+            return shadedAtLeast;
+        }
+
+        /**
+         * Sun the given trees would collect over the numberOfDays days after startDay if nothing on the board changed.
+         */
+        public int sunPointsComingUp(BoardGeometry geometry, long trees, int startDay, int numberOfDays) {
+            long[][] shade = shade(geometry);
+            int points = 0;
+            for (HexDirection direction : HexDirection.VALUES) {
+                int days = direction.daysInHorizon(startDay, numberOfDays);
+                if (days == 0) {
+                    continue;
+                }
+                long[] shadeToday = shade[direction.ordinal()];
+                int dayPoints = 0;
+                for (int treeSize = 1; treeSize < size.length; treeSize++) {
+                    dayPoints += treeSize * Long.bitCount(trees & size[treeSize] & ~shadeToday[treeSize]);
+                }
+                points += days * dayPoints;
+            }
+            return points;
+        }
+
+        /**
+         * Sum of the sizes of the trees in cells that are no bigger than maxSize.
+         */
+        public int sizePoints(long cells, int maxSize) {
+            int points = 0;
+            for (int i = 1; i <= Math.min(maxSize, size.length - 1); i++) {
+                points += i * Long.bitCount(cells & size[i]);
+            }
+            return points;
+        }
+    }
+    
+    /**
+     * The whole game as a value that search can push around: the trees as bitmasks like {@link Bitboard}, plus day,
+     * nutrients, sun, score and waiting for both players. Player 0 is us and player 1 is the opponent.
+     * A move is a packed int: the action in the low two bits (numbered like {@link Action}), the cell it's played on in
+     * the next six, and the seed target in the six after that. {@link #play} applies both players' moves as one
+     * simultaneous turn the way the referee resolves them, and when both are waiting it rolls over to the next day and
+     * hands out sun. Every play pushes the old state onto an undo stack first, so a search can walk down a line and
+     * {@link #undo} its way back without copying the whole thing.
+     * A planted seed goes dormant along with the tree that threw it, same as the referee.
+     */
+    static class Simulation {
+        static final int WAIT = 0;
+        static final int SEED = 1;
+        static final int COMPLETE = 2;
+        static final int GROW = 3;
+        static final int LAST_DAY = 23;
+        static final int MAX_MOVES = 1 + BoardGeometry.NUM_CELLS * BoardGeometry.NUM_CELLS;
+        private static final int[] GROW_BASE_COST = {1, 3, 7};
+        private static final int COMPLETE_COST = 4;
+        private static final int LONGS_PER_FRAME = 8;
+        private static final int INTS_PER_FRAME = 8;
+
+        private final BoardGeometry geometry;
+        final long[] owner = new long[2];
+        final long[] size = new long[4];
+        long dormant;
+        final int[] sun = new int[2];
+        final int[] score = new int[2];
+        final boolean[] waiting = new boolean[2];
+        int day;
+        int nutrients;
+        long hash;
+        private final long[] shadedAtLeast = new long[4];
+        private long[] undoLongs;
+        private int[] undoInts;
+        private int undoDepth;
+
+        public Simulation(BoardGeometry geometry) {
+            this.geometry = geometry;
+            this.undoLongs = new long[64 * LONGS_PER_FRAME];
+            this.undoInts = new int[64 * INTS_PER_FRAME];
+            this.undoDepth = 0;
+        }
+
+        static int move(int action, int cellIndex, int targetIndex) {
+            return action | (cellIndex << 2) | (targetIndex << 8);
+        }
+
+        static int action(int move) {
+            return move & 3;
+        }
+
+        static int cell(int move) {
+            return (move >>> 2) & 63;
+        }
+
+        static int target(int move) {
+            return (move >>> 8) & 63;
+        }
+
+        /**
+         * The move as the referee writes it, for debug messages; the move actually sent goes through {@link OutputWriter}.
+         */
+        static String describe(int move) {
+            Action action = Action.of(move);
+            switch (action) {
+                case WAIT:
+                    return action.name();
+                case SEED:
+                    return action.name() + " " + cell(move) + " " + target(move);
+                default:
+                    return action.name() + " " + cell(move);
+            }
+        }
+
+        public void load(Bitboard board, int day, int nutrients, int sun, int score, int oppSun, int oppScore, boolean oppIsWaiting) {
+            this.owner[0] = board.mine;
+            this.owner[1] = board.theirs;
+            System.arraycopy(board.size, 0, this.size, 0, size.length);
+            this.dormant = board.dormant;
+            this.day = day;
+            this.nutrients = nutrients;
+            this.sun[0] = sun;
+            this.sun[1] = oppSun;
+            this.score[0] = score;
+            this.score[1] = oppScore;
+            this.waiting[0] = false;
+            this.waiting[1] = oppIsWaiting;
+            this.hash = Zobrist.hash(this);
+            this.undoDepth = 0;
+        }
+
+        public void copyTo(Bitboard board) {
+            board.set(owner[0], owner[1], dormant, size);
+        }
+
+        public void copyFrom(Simulation other) {
+            System.arraycopy(other.owner, 0, owner, 0, owner.length);
+            System.arraycopy(other.size, 0, size, 0, size.length);
+            dormant = other.dormant;
+            System.arraycopy(other.sun, 0, sun, 0, sun.length);
+            System.arraycopy(other.score, 0, score, 0, score.length);
+            System.arraycopy(other.waiting, 0, waiting, 0, waiting.length);
+            day = other.day;
+            nutrients = other.nutrients;
+            hash = other.hash;
+            undoDepth = 0;
+        }
+
+        public boolean isGameOver() {
+            return day > LAST_DAY;
+        }
+
+        public int finalScore(int player) {
+            return score[player] + sun[player] / 3;
+        }
+
+        /**
+         * Positive if we're ahead on final score, negative if behind. Ties go to whoever has more trees.
+         */
+        public int result() {
+            int difference = finalScore(0) - finalScore(1);
+            if (difference != 0) {
+                return difference;
+            }
+            return Long.bitCount(owner[0]) - Long.bitCount(owner[1]);
+        }
+
+        public int treeSize(int cellIndex) {
+            long bit = 1L << cellIndex;
+            for (int i = 0; i < size.length; i++) {
+                if ((size[i] & bit) != 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        public int growCost(int player, int treeSize) {
+            return GROW_BASE_COST[treeSize] + Long.bitCount(owner[player] & size[treeSize + 1]);
+        }
+
+        public int seedCost(int player) {
+            return Long.bitCount(owner[player] & size[0]);
+        }
+
+        private int richnessBonus(long bit) {
+            if ((geometry.richness(3) & bit) != 0) {
+                return 4;
+            }
+            if ((geometry.richness(2) & bit) != 0) {
+                return 2;
+            }
+            return 0;
+        }
+
+        /**
+         * Writes every move the player could make right now into moves, WAIT first, and returns how many there are.
+         * moves needs room for {@link #MAX_MOVES}.
+         */
+        public int legalMoves(int player, int[] moves) {
+            int count = 0;
+            moves[count++] = WAIT;
+            if (isGameOver() || waiting[player]) {
+                return count;
+            }
+            long active = owner[player] & ~dormant;
+            int available = sun[player];
+            if (available >= COMPLETE_COST) {
+                for (long trees = active & size[3]; trees != 0; trees &= trees - 1) {
+                    moves[count++] = move(COMPLETE, Long.numberOfTrailingZeros(trees), 0);
+                }
+            }
+            for (int treeSize = 0; treeSize < 3; treeSize++) {
+                if (available >= growCost(player, treeSize)) {
+                    for (long trees = active & size[treeSize]; trees != 0; trees &= trees - 1) {
+                        moves[count++] = move(GROW, Long.numberOfTrailingZeros(trees), 0);
+                    }
+                }
+            }
+            if (available >= seedCost(player)) {
+                long freeCells = geometry.usableCells() & ~(owner[0] | owner[1]);
+                for (int treeSize = 1; treeSize <= BoardGeometry.MAX_SEED_RANGE; treeSize++) {
+                    for (long trees = active & size[treeSize]; trees != 0; trees &= trees - 1) {
+                        int source = Long.numberOfTrailingZeros(trees);
+                        for (long targets = geometry.range(source, treeSize) & freeCells; targets != 0; targets &= targets - 1) {
+                            moves[count++] = move(SEED, source, Long.numberOfTrailingZeros(targets));
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        public boolean isLegal(int player, int move) {
+            if (action(move) == WAIT) {
+                return true;
+            }
+            int cellIndex = cell(move);
+            long bit = 1L << cellIndex;
+            if (isGameOver() || waiting[player] || (owner[player] & ~dormant & bit) == 0) {
                 return false;
             }
-            return Objects.equals(this.cell, other.cell);
+            int treeSize = treeSize(cellIndex);
+            switch (action(move)) {
+                case COMPLETE:
+                    return treeSize == 3 && sun[player] >= COMPLETE_COST;
+                case GROW:
+                    return treeSize < 3 && sun[player] >= growCost(player, treeSize);
+                case SEED:
+                default:
+                    long freeCells = geometry.usableCells() & ~(owner[0] | owner[1]);
+                    return treeSize >= 1
+                        && (geometry.range(cellIndex, treeSize) & freeCells & (1L << target(move))) != 0
+                        && sun[player] >= seedCost(player);
+            }
+        }
+
+        /**
+         * A uniformly random legal move for rollouts, except that all the seed moves together count as one choice so
+         * they don't swamp everything else. Always WAIT for a player that's already waiting.
+         */
+        public int randomMove(int player, int[] moves, Random random) {
+            int count = legalMoves(player, moves);
+            int seeds = 0;
+            while (seeds < count && action(moves[count - 1 - seeds]) == SEED) {
+                seeds++;
+            }
+            int others = count - seeds;
+            int pick = random.nextInt(seeds > 0 ? others + 1 : others);
+            if (pick == others) {
+                return moves[others + random.nextInt(seeds)];
+            }
+            return moves[pick];
+        }
+
+        public boolean matches(Simulation other) {
+            return Arrays.equals(owner, other.owner)
+                && Arrays.equals(size, other.size)
+                && dormant == other.dormant
+                && Arrays.equals(sun, other.sun)
+                && Arrays.equals(score, other.score)
+                && Arrays.equals(waiting, other.waiting)
+                && day == other.day
+                && nutrients == other.nutrients;
+        }
+
+        /**
+         * One simultaneous turn. A player that's already waiting must be given WAIT.
+         * Both COMPLETEs score off the same nutrients before they drop, and two seeds thrown at the same cell both
+         * fizzle: nobody pays, nothing gets planted, but both source trees still go dormant.
+         */
+        public void play(int myMove, int oppMove) {
+            pushUndo();
+            if (action(myMove) == SEED && action(oppMove) == SEED && target(myMove) == target(oppMove)) {
+                makeDormant((1L << cell(myMove)) | (1L << cell(oppMove)));
+            }
+            else {
+                int completes = apply(0, myMove) + apply(1, oppMove);
+                setNutrients(Math.max(0, nutrients - completes));
+            }
+            if (waiting[0] && waiting[1]) {
+                advanceDay();
+            }
+        }
+
+        /**
+         * Returns 1 if the move was a COMPLETE, so the caller can take the nutrients down once both players have scored.
+         */
+        private int apply(int player, int move) {
+            int cellIndex = cell(move);
+            long bit = 1L << cellIndex;
+            switch (action(move)) {
+                case SEED:
+                    long targetBit = 1L << target(move);
+                    setSun(player, sun[player] - seedCost(player));
+                    owner[player] |= targetBit;
+                    size[0] |= targetBit;
+                    hash ^= Zobrist.tree(player, 0, target(move));
+                    makeDormant(bit | targetBit);
+                    return 0;
+                case GROW:
+                    int treeSize = treeSize(cellIndex);
+                    setSun(player, sun[player] - growCost(player, treeSize));
+                    size[treeSize] &= ~bit;
+                    size[treeSize + 1] |= bit;
+                    hash ^= Zobrist.tree(player, treeSize, cellIndex) ^ Zobrist.tree(player, treeSize + 1, cellIndex);
+                    makeDormant(bit);
+                    return 0;
+                case COMPLETE:
+                    setSun(player, sun[player] - COMPLETE_COST);
+                    setScore(player, score[player] + nutrients + richnessBonus(bit));
+                    owner[player] &= ~bit;
+                    size[3] &= ~bit;
+                    hash ^= Zobrist.tree(player, 3, cellIndex);
+                    wake(bit);
+                    return 1;
+                case WAIT:
+                default:
+                    setWaiting(player, true);
+                    return 0;
+            }
+        }
+
+        private void advanceDay() {
+            setDay(day + 1);
+            setWaiting(0, false);
+            setWaiting(1, false);
+            wake(dormant);
+            if (isGameOver()) {
+                return;
+            }
+            geometry.fillShade(HexDirection.ofSunOnDay(day), size, shadedAtLeast);
+            for (int player = 0; player < 2; player++) {
+                int gathered = 0;
+                for (int treeSize = 1; treeSize < size.length; treeSize++) {
+                    gathered += treeSize * Long.bitCount(owner[player] & size[treeSize] & ~shadedAtLeast[treeSize]);
+                }
+                setSun(player, sun[player] + gathered);
+            }
+        }
+
+        /*
+         * Every change to a hashed field goes through one of these so hash stays in step with the state.
+         */
+
+        private void setSun(int player, int value) {
+            hash ^= Zobrist.mix(Zobrist.SUN + player, sun[player]) ^ Zobrist.mix(Zobrist.SUN + player, value);
+            sun[player] = value;
+        }
+
+        private void setScore(int player, int value) {
+            hash ^= Zobrist.mix(Zobrist.SCORE + player, score[player]) ^ Zobrist.mix(Zobrist.SCORE + player, value);
+            score[player] = value;
+        }
+
+        private void setDay(int value) {
+            hash ^= Zobrist.mix(Zobrist.DAY, day) ^ Zobrist.mix(Zobrist.DAY, value);
+            day = value;
+        }
+
+        private void setNutrients(int value) {
+            hash ^= Zobrist.mix(Zobrist.NUTRIENTS, nutrients) ^ Zobrist.mix(Zobrist.NUTRIENTS, value);
+            nutrients = value;
+        }
+
+        private void setWaiting(int player, boolean value) {
+            int before = Zobrist.waitingBits(this);
+            waiting[player] = value;
+            hash ^= Zobrist.mix(Zobrist.WAITING, before) ^ Zobrist.mix(Zobrist.WAITING, Zobrist.waitingBits(this));
+        }
+
+        private void makeDormant(long cells) {
+            hash ^= Zobrist.dormant(cells & ~dormant);
+            dormant |= cells;
+        }
+
+        private void wake(long cells) {
+            hash ^= Zobrist.dormant(cells & dormant);
+            dormant &= ~cells;
+        }
+
+        private void pushUndo() {
+            if ((undoDepth + 1) * LONGS_PER_FRAME > undoLongs.length) {
+                undoLongs = Arrays.copyOf(undoLongs, undoLongs.length * 2);
+                undoInts = Arrays.copyOf(undoInts, undoInts.length * 2);
+            }
+            int l = undoDepth * LONGS_PER_FRAME;
+            undoLongs[l] = owner[0];
+            undoLongs[l + 1] = owner[1];
+            undoLongs[l + 2] = size[0];
+            undoLongs[l + 3] = size[1];
+            undoLongs[l + 4] = size[2];
+            undoLongs[l + 5] = size[3];
+            undoLongs[l + 6] = dormant;
+            undoLongs[l + 7] = hash;
+            int i = undoDepth * INTS_PER_FRAME;
+            undoInts[i] = sun[0];
+            undoInts[i + 1] = sun[1];
+            undoInts[i + 2] = score[0];
+            undoInts[i + 3] = score[1];
+            undoInts[i + 4] = waiting[0] ? 1 : 0;
+            undoInts[i + 5] = waiting[1] ? 1 : 0;
+            undoInts[i + 6] = day;
+            undoInts[i + 7] = nutrients;
+            undoDepth++;
+        }
+
+        /**
+         * Takes back the last {@link #play}.
+         */
+        public void undo() {
+            undoDepth--;
+            int l = undoDepth * LONGS_PER_FRAME;
+            owner[0] = undoLongs[l];
+            owner[1] = undoLongs[l + 1];
+            size[0] = undoLongs[l + 2];
+            size[1] = undoLongs[l + 3];
+            size[2] = undoLongs[l + 4];
+            size[3] = undoLongs[l + 5];
+            dormant = undoLongs[l + 6];
+            hash = undoLongs[l + 7];
+            int i = undoDepth * INTS_PER_FRAME;
+            sun[0] = undoInts[i];
+            sun[1] = undoInts[i + 1];
+            score[0] = undoInts[i + 2];
+            score[1] = undoInts[i + 3];
+            waiting[0] = undoInts[i + 4] != 0;
+            waiting[1] = undoInts[i + 5] != 0;
+            day = undoInts[i + 6];
+            nutrients = undoInts[i + 7];
         }
     }
     
@@ -828,16 +2856,6 @@ public class Main {
             return new Tree(cell, size + 1, isMine, isDormant);
         }
         
-        public Set<ShadeSource> whichCellsAreShaded(HexDirection shadeDirection) {
-            Cell currentCell = cell;
-            Set<ShadeSource> shadedCells = new HashSet<>();
-            for (int i = 0; i < size; i++) {
-                currentCell = currentCell.neighbors.get(shadeDirection);
-                shadedCells.add(new ShadeSource(currentCell, size));
-            }
-            return shadedCells;
-        }
-
         @Override
         public int hashCode() {
             int hash = 7;
@@ -1,15 +1,20 @@
 package dev.jeffrpowell.codingame.spring2022;
 
 import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.InputMismatchException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Random;
 import java.util.PriorityQueue;
-import java.util.Scanner;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -21,10 +26,10 @@ public class Main {
     private static final Point2D MAX_PT = new Point2D.Double(17630, 9000);
     private static final Point2D MIN_PT = new Point2D.Double(0, 0);
     private static final int BASE_RANGE = 5000;
-    private static long distanceCalcs = 0;
+    private static volatile boolean debugEnabled = true;
 
     public static void main(String args[]) {
-        Scanner in = new Scanner(System.in);
+        InputReader in = new InputReader(System.in);
         int baseX = in.nextInt(); // The corner of the map representing your base
         int baseY = in.nextInt();
         int heroesPerPlayer = in.nextInt(); // Always 3
@@ -53,33 +58,459 @@ public class Main {
                 int vy = in.nextInt();
                 int nearBase = in.nextInt(); // 0=monster with no target yet, 1=monster targeting a base
                 int threatFor = in.nextInt(); // Given this monster's trajectory, is it a threat to 1=your base, 2=your opponent's base, 0=neither
-                if (type == 0) {
-                    if (threatFor == 1) {
-                        state.threateningMonsters.add(new Monster(id, x, y, health, vx, vy, nearBase == 1, shieldLife > 0, state));
-                    } else if (threatFor == 0){
-                        state.wanderingMonsters.add(new Monster(id, x, y, health, vx, vy, false, shieldLife > 0, state));
-                    } else if (threatFor == 2) {
-                        state.helpfulMonsters.add(new Monster(id, x, y, health, vx, vy, nearBase == 1, shieldLife > 0, state));
+                state.readEntity(id, type, x, y, shieldLife, isControlled, health, vx, vy, nearBase, threatFor);
+            }
+            state.finishReading();
+            heroCoordinator.executeMoves().forEach(System.out::println);
+            state.endTurn();
+        }
+    }
+
+    /**
+     * Byte-level stand-in for Scanner: reads stdin through one reusable buffer and parses ints by hand.
+     * Only blocks for more input when the buffer runs dry, so a line the referee hasn't finished sending is simply waited on.
+     */
+    private static class InputReader {
+        private final InputStream stream;
+        private final byte[] buffer;
+        private int length;
+        private int pointer;
+
+        public InputReader(InputStream stream) {
+            this.stream = stream;
+            this.buffer = new byte[1 << 16];
+            this.length = 0;
+            this.pointer = 0;
+        }
+
+        private int read() {
+            if (pointer == length) {
+                try {
+                    length = stream.read(buffer, 0, buffer.length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                pointer = 0;
+                if (length <= 0) {
+                    length = 0;
+                    return -1;
+                }
+            }
+            return buffer[pointer++] & 0xFF;
+        }
+
+        public int nextInt() {
+            int c = read();
+            while (c != -1 && c <= ' ') {
+                c = read();
+            }
+            if (c == -1) {
+                throw new NoSuchElementException();
+            }
+            boolean negative = c == '-';
+            if (negative) {
+                c = read();
+            }
+            if (c < '0' || c > '9') {
+                throw new InputMismatchException("Expected a number, got '" + (char) c + "'");
+            }
+            int result = 0;
+            while (c >= '0' && c <= '9') {
+                result = result * 10 + (c - '0');
+                c = read();
+            }
+            if (c > ' ') {
+                throw new InputMismatchException("Expected a number, got '" + (char) c + "' after " + result);
+            }
+            return negative ? -result : result;
+        }
+    }
+
+    /**
+     * A headless stand-in for the online referee, so the bot can play itself locally: both sides get a fresh
+     * GameState and HeroCoordinator, are fed what they can see through {@link GameState#readEntity}, and their commands
+     * come straight back from {@link HeroCoordinator#executeMoves}. Everything random comes from one seed, so a seed is
+     * a replayable match.
+     * A turn goes: heroes under last turn's CONTROL are dragged toward its point, spells are checked against the state at
+     * the start of the turn and then take effect (WIND pushes every unshielded monster and enemy hero near the caster,
+     * SHIELD lasts 12 turns, CONTROL takes over the target's next move and shows as isControlled on the following turn), heroes that weren't blown away move up to 800, every hero hits every
+     * monster within 800 for 2 damage and 2 mana, then the monsters move. A monster that comes within BASE_RANGE of a base
+     * heads straight for it and takes a point of health when it gets within 300. New monsters spawn in mirrored pairs
+     * just off the top and bottom edges, a little tougher as the game goes on.
+     * The spawn points, spawn rate and health curve are guesses at the real referee's, close enough for regression runs
+     * and tuning but not for predicting ladder results.
+     * java -cp target/classes 'dev.jeffrpowell.codingame.spring2022.Main$Referee' [matches] [seed]
+     */
+    static class Referee {
+        private static final int WIDTH = 17630;
+        private static final int HEIGHT = 9000;
+        private static final int HEROES_PER_PLAYER = 3;
+        private static final int MAX_TURNS = 220;
+        private static final int STARTING_HEALTH = 3;
+        private static final int HERO_SPEED = 800;
+        private static final int HERO_VIEW_RANGE = 2200;
+        private static final int BASE_VIEW_RANGE = 6000;
+        private static final int DAMAGE = 2;
+        private static final int BASE_DAMAGE_RANGE = 300;
+        private static final int SPELL_COST = 10;
+        private static final int SPAWN_PERIOD = 3;
+        private static final int MONSTER_BASE_HEALTH = 10;
+        private static final int TURNS_PER_EXTRA_HEALTH = 10;
+        private static final int THREAT_LOOKAHEAD = 60;
+        private static final int[][] SPAWN_POINTS = {{WIDTH / 2, -400}, {WIDTH / 2 + 4000, -400}};
+        private static final int[][] HERO_STARTS = {{1131, 1131}, {1414, 849}, {849, 1414}};
+        private static final int[][] BASES = {{0, 0}, {WIDTH, HEIGHT}};
+        private final Random random;
+        private final List<Unit> heroes;
+        private final List<Unit> monsters;
+        private final GameState[] states;
+        private final HeroCoordinator[] coordinators;
+        private final int[] health;
+        private final int[] mana;
+        private final int[] wildMana;
+        private int turn;
+        private int nextId;
+
+        public Referee(long seed) {
+            this.random = new Random(seed);
+            this.heroes = new ArrayList<>();
+            this.monsters = new ArrayList<>();
+            this.states = new GameState[2];
+            this.coordinators = new HeroCoordinator[2];
+            this.health = new int[]{STARTING_HEALTH, STARTING_HEALTH};
+            this.mana = new int[2];
+            this.wildMana = new int[2];
+            this.turn = 0;
+            for (int player = 0; player < 2; player++) {
+                states[player] = new GameState();
+                coordinators[player] = new HeroCoordinator(states[player], BASES[player][0]);
+                for (int[] start : HERO_STARTS) {
+                    int x = player == 0 ? start[0] : WIDTH - start[0];
+                    int y = player == 0 ? start[1] : HEIGHT - start[1];
+                    heroes.add(new Unit(heroes.size(), player, x, y, 0, 0, -1));
+                }
+            }
+            this.nextId = heroes.size();
+        }
+
+        public static void main(String[] args) {
+            int matches = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+            long seed = args.length > 1 ? Long.parseLong(args[1]) : 2022;
+            debugEnabled = false;
+            int[] results = new int[3];
+            long turns = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < matches; i++) {
+                Referee referee = new Referee(seed + i);
+                results[referee.play() + 1]++;
+                turns += referee.turn;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d matches: player 0 won %d, player 1 won %d, %d draws, %.1f turns on average%n", matches, results[1], results[2], results[0], (double) turns / matches);
+            System.out.printf("%.2f matches/s%n", matches / seconds);
+        }
+
+        /**
+         * Plays the match out and returns the winner: 0, 1, or -1 for a draw. Base health decides it, then the mana
+         * each side earned outside its own base.
+         */
+        public int play() {
+            while (turn < MAX_TURNS && health[0] > 0 && health[1] > 0) {
+                List<String> commands0 = askForCommands(0);
+                List<String> commands1 = askForCommands(1);
+                List<String> commands = new ArrayList<>(commands0);
+                commands.addAll(commands1);
+                playTurn(commands);
+                turn++;
+            }
+            int difference = health[0] != health[1] ? health[0] - health[1] : wildMana[0] - wildMana[1];
+            return difference > 0 ? 0 : difference < 0 ? 1 : -1;
+        }
+
+        private List<String> askForCommands(int player) {
+            GameState state = states[player];
+            state.myMana = mana[player];
+            for (Unit hero : heroes) {
+                if (hero.owner == player || canSee(player, hero)) {
+                    state.readEntity(hero.id, hero.owner == player ? 1 : 2, hero.x, hero.y, hero.shieldLife, hero.controlled ? 1 : 0, -1, -1, -1, -1, -1);
+                }
+            }
+            for (Unit monster : monsters) {
+                if (canSee(player, monster)) {
+                    int threat = threatenedBase(monster);
+                    int threatFor = threat == -1 ? 0 : threat == player ? 1 : 2;
+                    state.readEntity(monster.id, 0, monster.x, monster.y, monster.shieldLife, monster.controlled ? 1 : 0, monster.health, monster.vx, monster.vy, monster.targetBase == -1 ? 0 : 1, threatFor);
+                }
+            }
+            state.finishReading();
+            List<String> commands = coordinators[player].executeMoves();
+            state.endTurn();
+            return commands;
+        }
+
+        private boolean canSee(int player, Unit unit) {
+            if (distance(unit.x, unit.y, BASES[player][0], BASES[player][1]) <= BASE_VIEW_RANGE) {
+                return true;
+            }
+            return heroes.stream()
+                .filter(hero -> hero.owner == player)
+                .anyMatch(hero -> distance(unit.x, unit.y, hero.x, hero.y) <= HERO_VIEW_RANGE);
+        }
+
+        /**
+         * The base this monster is headed for, or will be once it keeps going in a straight line, or -1.
+         */
+        private int threatenedBase(Unit monster) {
+            if (monster.targetBase != -1) {
+                return monster.targetBase;
+            }
+            double x = monster.x;
+            double y = monster.y;
+            boolean entered = isInside(x, y);
+            for (int step = 0; step < THREAT_LOOKAHEAD; step++) {
+                x += monster.vx;
+                y += monster.vy;
+                boolean inside = isInside(x, y);
+                if (entered && !inside) {
+                    return -1;
+                }
+                entered |= inside;
+                for (int base = 0; base < 2; base++) {
+                    if (distance(x, y, BASES[base][0], BASES[base][1]) <= BASE_RANGE) {
+                        return base;
                     }
                 }
-                else if (type == 1) {
-                    if (state.turn == 0){
-                        state.heroes.put(id, new Hero(id, x, y, shieldLife > 0, getEuclideanDistance(new Point2D.Double(x, y), state.baseXY) <= BASE_RANGE, isControlled == 1, state));
+            }
+            return -1;
+        }
+
+        /**
+         * commands holds one line per hero, in hero id order.
+         */
+        private void playTurn(List<String> commands) {
+            String[][] orders = new String[heroes.size()][];
+            for (Unit hero : heroes) {
+                orders[hero.id] = hero.controlTarget != null
+                    ? new String[]{"MOVE", Integer.toString(hero.controlTarget[0]), Integer.toString(hero.controlTarget[1])}
+                    : commands.get(hero.id).split(" ");
+                hero.controlTarget = null;
+                hero.controlled = false;
+                hero.pushed = false;
+            }
+            monsters.forEach(monster -> monster.controlled = false);
+            castSpells(orders);
+            for (Unit hero : heroes) {
+                String[] order = orders[hero.id];
+                if (!hero.pushed && order[0].equals("MOVE")) {
+                    hero.moveToward(Integer.parseInt(order[1]), Integer.parseInt(order[2]), HERO_SPEED);
+                    hero.clamp();
+                }
+            }
+            for (Unit hero : heroes) {
+                for (Unit monster : monsters) {
+                    if (distance(hero.x, hero.y, monster.x, monster.y) <= Hero.ATTACK_DISTANCE) {
+                        monster.health -= DAMAGE;
+                        mana[hero.owner] += DAMAGE;
+                        if (distance(monster.x, monster.y, BASES[hero.owner][0], BASES[hero.owner][1]) > BASE_RANGE) {
+                            wildMana[hero.owner] += DAMAGE;
+                        }
                     }
-                    else {
-                        state.heroes.get(id).updateHero(x, y, shieldLife > 0, getEuclideanDistance(new Point2D.Double(x, y), state.baseXY) <= BASE_RANGE, isControlled == 1);
+                }
+            }
+            monsters.removeIf(monster -> monster.health <= 0);
+            moveMonsters();
+            spawnMonsters();
+            Stream.concat(heroes.stream(), monsters.stream())
+                .filter(unit -> unit.shieldLife > 0)
+                .forEach(unit -> unit.shieldLife--);
+        }
+
+        /**
+         * Every spell is checked against where things stood before any of them went off, so neither player gets to
+         * act first. A spell that can't go off costs nothing.
+         */
+        private void castSpells(String[][] orders) {
+            Map<Integer, Unit> units = Stream.concat(heroes.stream(), monsters.stream())
+                .collect(Collectors.toMap(unit -> unit.id, Function.identity()));
+            Set<Unit> shielded = units.values().stream().filter(unit -> unit.shieldLife > 0).collect(Collectors.toSet());
+            Map<Unit, double[]> pushes = new TreeMap<>(Comparator.comparingInt(unit -> unit.id));
+            for (Unit caster : heroes) {
+                String[] order = orders[caster.id];
+                if (!order[0].equals("SPELL") || mana[caster.owner] < SPELL_COST) {
+                    continue;
+                }
+                boolean cast = false;
+                switch (order[1]) {
+                    case "WIND":
+                        double dx = Integer.parseInt(order[2]) - caster.x;
+                        double dy = Integer.parseInt(order[3]) - caster.y;
+                        double length = Math.hypot(dx, dy);
+                        if (length == 0) {
+                            break;
+                        }
+                        for (Unit unit : units.values()) {
+                            if (unit.owner != caster.owner && !shielded.contains(unit) && distance(unit.x, unit.y, caster.x, caster.y) <= WindSpell.RANGE) {
+                                double[] push = pushes.computeIfAbsent(unit, key -> new double[2]);
+                                push[0] += dx / length * WindSpell.PUSH;
+                                push[1] += dy / length * WindSpell.PUSH;
+                            }
+                        }
+                        cast = true;
+                        break;
+                    case "SHIELD":
+                        Unit protege = units.get(Integer.parseInt(order[2]));
+                        if (protege != null && !shielded.contains(protege) && distance(protege.x, protege.y, caster.x, caster.y) <= ShieldSpell.RANGE) {
+                            protege.shieldLife = ShieldSpell.DURATION;
+                            cast = true;
+                        }
+                        break;
+                    case "CONTROL":
+                        Unit puppet = units.get(Integer.parseInt(order[2]));
+                        if (puppet != null && puppet.owner != caster.owner && !shielded.contains(puppet) && distance(puppet.x, puppet.y, caster.x, caster.y) <= ControlSpell.RANGE) {
+                            puppet.controlTarget = new int[]{Integer.parseInt(order[3]), Integer.parseInt(order[4])};
+                            puppet.controlled = true;
+                            cast = true;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                if (cast) {
+                    mana[caster.owner] -= SPELL_COST;
+                }
+            }
+            pushes.forEach((unit, push) -> {
+                unit.x = (int) (unit.x + push[0]);
+                unit.y = (int) (unit.y + push[1]);
+                unit.pushed = true;
+                if (unit.owner != -1) {
+                    unit.clamp();
+                }
+            });
+        }
+
+        private void moveMonsters() {
+            Iterator<Unit> i = monsters.iterator();
+            while (i.hasNext()) {
+                Unit monster = i.next();
+                if (monster.controlTarget != null && !monster.pushed) {
+                    monster.aimAt(monster.controlTarget[0], monster.controlTarget[1]);
+                    monster.targetBase = -1;
+                    monster.controlTarget = null;
+                }
+                if (!monster.pushed) {
+                    monster.x += monster.vx;
+                    monster.y += monster.vy;
+                }
+                monster.pushed = false;
+                boolean inside = isInside(monster.x, monster.y);
+                if (monster.entered && !inside) {
+                    i.remove();
+                    continue;
+                }
+                monster.entered |= inside;
+                if (monster.targetBase != -1) {
+                    int[] base = BASES[monster.targetBase];
+                    double toBase = distance(monster.x, monster.y, base[0], base[1]);
+                    if (toBase <= BASE_DAMAGE_RANGE) {
+                        health[monster.targetBase]--;
+                        i.remove();
+                        continue;
+                    }
+                    if (toBase > BASE_RANGE) {
+                        monster.targetBase = -1;
                     }
                 }
-                else if (type == 2) {
-                    double distanceToBase = getEuclideanDistance(new Point2D.Double(x, y), state.baseXY);
-                    state.enemyHeroes.putIfAbsent(id, new Hero(id, x, y, shieldLife > 0, distanceToBase <= BASE_RANGE, isControlled == 1, state));
-                    state.enemyHeroes.get(id).updateHero(x, y, shieldLife > 0, distanceToBase <= BASE_RANGE, isControlled == 1);
+                for (int base = 0; base < 2 && monster.targetBase == -1; base++) {
+                    if (distance(monster.x, monster.y, BASES[base][0], BASES[base][1]) <= BASE_RANGE) {
+                        monster.targetBase = base;
+                    }
+                }
+                if (monster.targetBase != -1) {
+                    monster.aimAt(BASES[monster.targetBase][0], BASES[monster.targetBase][1]);
                 }
             }
-            state.enemyHeroes.values().stream().filter(h -> h.distanceToPt(state.baseXY) <= h.distanceToPt(state.oppositeBaseXY)).forEach(state.enemiesInMyTerritory::add);
-            state.enemyInMyTerritory = !state.enemiesInMyTerritory.isEmpty();
-            heroCoordinator.executeMoves();
-            state.endTurn();
+        }
+
+        private void spawnMonsters() {
+            if (turn % SPAWN_PERIOD != 0) {
+                return;
+            }
+            int[] spawn = SPAWN_POINTS[random.nextInt(SPAWN_POINTS.length)];
+            double angle = Math.PI / 4 + random.nextDouble() * Math.PI / 2;
+            int monsterHealth = MONSTER_BASE_HEALTH + turn / TURNS_PER_EXTRA_HEALTH;
+            Unit monster = new Unit(nextId++, -1, spawn[0], spawn[1], (int) (Math.cos(angle) * Monster.SPEED), (int) (Math.sin(angle) * Monster.SPEED), monsterHealth);
+            Unit mirror = new Unit(nextId++, -1, WIDTH - spawn[0], HEIGHT - spawn[1], -monster.vx, -monster.vy, monsterHealth);
+            monsters.add(monster);
+            monsters.add(mirror);
+        }
+
+        private static boolean isInside(double x, double y) {
+            return x >= 0 && x <= WIDTH && y >= 0 && y <= HEIGHT;
+        }
+
+        private static double distance(double x1, double y1, double x2, double y2) {
+            return Math.hypot(x1 - x2, y1 - y2);
+        }
+
+        /**
+         * A hero (owner 0 or 1) or a monster (owner -1) as the referee sees it, positions truncated to whole units
+         * every turn like the real one.
+         */
+        private static class Unit {
+            final int id;
+            final int owner;
+            int x;
+            int y;
+            int vx;
+            int vy;
+            int health;
+            int shieldLife;
+            int targetBase;
+            int[] controlTarget;
+            boolean controlled;
+            boolean pushed;
+            boolean entered;
+
+            Unit(int id, int owner, int x, int y, int vx, int vy, int health) {
+                this.id = id;
+                this.owner = owner;
+                this.x = x;
+                this.y = y;
+                this.vx = vx;
+                this.vy = vy;
+                this.health = health;
+                this.shieldLife = 0;
+                this.targetBase = -1;
+                this.controlTarget = null;
+                this.controlled = false;
+                this.pushed = false;
+                this.entered = false;
+            }
+
+            void moveToward(int targetX, int targetY, int speed) {
+                double length = distance(x, y, targetX, targetY);
+                if (length <= speed) {
+                    x = targetX;
+                    y = targetY;
+                    return;
+                }
+                x = (int) (x + (targetX - x) / length * speed);
+                y = (int) (y + (targetY - y) / length * speed);
+            }
+
+            void aimAt(int targetX, int targetY) {
+                double length = distance(x, y, targetX, targetY);
+                if (length > 0) {
+                    vx = (int) ((targetX - x) / length * Monster.SPEED);
+                    vy = (int) ((targetY - y) / length * Monster.SPEED);
+                }
+            }
+
+            void clamp() {
+                x = Math.max(0, Math.min(WIDTH, x));
+                y = Math.max(0, Math.min(HEIGHT, y));
+            }
         }
     }
 
@@ -102,6 +533,7 @@ public class Main {
         Point2D attackClosePatrol;
         Point2D attackFarExplore;
         Point2D attackCloseExplore;
+        long distanceCalcs;
 
         public GameState() {
             this.myMana = 0;
@@ -122,6 +554,42 @@ public class Main {
             this.attackClosePatrol = null;
             this.attackFarExplore = null;
             this.attackCloseExplore = null;
+            this.distanceCalcs = 0;
+        }
+
+        public void readEntity(int id, int type, int x, int y, int shieldLife, int isControlled, int health, int vx, int vy, int nearBase, int threatFor) {
+            if (type == 0) {
+                if (threatFor == 1) {
+                    threateningMonsters.add(new Monster(id, x, y, health, vx, vy, nearBase == 1, shieldLife > 0, this));
+                } else if (threatFor == 0){
+                    wanderingMonsters.add(new Monster(id, x, y, health, vx, vy, false, shieldLife > 0, this));
+                } else if (threatFor == 2) {
+                    helpfulMonsters.add(new Monster(id, x, y, health, vx, vy, nearBase == 1, shieldLife > 0, this));
+                }
+            }
+            else if (type == 1) {
+                if (turn == 0){
+                    heroes.put(id, new Hero(id, x, y, shieldLife > 0, getEuclideanDistance(new Point2D.Double(x, y), baseXY) <= BASE_RANGE, isControlled == 1, this));
+                }
+                else {
+                    heroes.get(id).updateHero(x, y, shieldLife > 0, getEuclideanDistance(new Point2D.Double(x, y), baseXY) <= BASE_RANGE, isControlled == 1);
+                }
+            }
+            else if (type == 2) {
+                double distanceToBase = getEuclideanDistance(new Point2D.Double(x, y), baseXY);
+                enemyHeroes.putIfAbsent(id, new Hero(id, x, y, shieldLife > 0, distanceToBase <= BASE_RANGE, isControlled == 1, this));
+                enemyHeroes.get(id).updateHero(x, y, shieldLife > 0, distanceToBase <= BASE_RANGE, isControlled == 1);
+            }
+        }
+
+        public double getEuclideanDistance(Point2D pt1, Point2D pt2) {
+            distanceCalcs++;
+            return pt1.distance(pt2);
+        }
+
+        public void finishReading() {
+            enemyHeroes.values().stream().filter(h -> h.distanceToPt(baseXY) <= h.distanceToPt(oppositeBaseXY)).forEach(enemiesInMyTerritory::add);
+            enemyInMyTerritory = !enemiesInMyTerritory.isEmpty();
         }
 
         public void endTurn() {
@@ -206,7 +674,10 @@ public class Main {
             }
         }
 
-        public void executeMoves() {
+        /**
+         * One command per hero, in hero id order, for the caller to print.
+         */
+        public List<String> executeMoves() {
             analyzeBoardAndUpdateState();
             int numAttackers = numberOfAttackers();
             Set<Hero> attackers = state.heroes.values().stream()
@@ -218,9 +689,9 @@ public class Main {
                 .collect(Collectors.toSet());
             handleDefenders(defenders);
             handleAttackers(attackers);
-            state.heroes.values().stream().forEach(hero -> 
-                System.out.println(hero.getTarget().printTarget() + (hero.getId() == 0 || hero.getId() == 3 ? " Dist calcs: " + distanceCalcs : ""))
-            );
+            return state.heroes.values().stream()
+                .map(hero -> hero.getTarget().printTarget() + (hero.getId() == 0 || hero.getId() == 3 ? " Dist calcs: " + state.distanceCalcs : ""))
+                .collect(Collectors.toList());
         }
 
         private void analyzeBoardAndUpdateState() {
@@ -374,11 +845,11 @@ public class Main {
         }
         
         public double distanceToEntity(Entity e) {
-            return getEuclideanDistance(xy, e.getXy());
+            return state.getEuclideanDistance(xy, e.getXy());
         }
         
         public double distanceToPt(Point2D pt) {
-            return getEuclideanDistance(xy, pt);
+            return state.getEuclideanDistance(xy, pt);
         }
     }
 
@@ -812,11 +1283,6 @@ public class Main {
         }
     }
 
-    private static double getEuclideanDistance(Point2D pt1, Point2D pt2) {
-        distanceCalcs++;
-        return pt1.distance(pt2);
-    }
-
     private static Point2D applyVectorToPt(Point2D vector, Point2D pt) {
         return new Point2D.Double(pt.getX() + vector.getX(), pt.getY() + vector.getY());
     }
@@ -830,7 +1296,9 @@ public class Main {
     }
 
     private static void debug(String message) {
-        System.err.println(message);
+        if (debugEnabled) {
+            System.err.println(message);
+        }
     }
 
     private static String heroToString(int id) {
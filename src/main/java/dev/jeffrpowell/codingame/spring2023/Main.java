@@ -1,22 +1,22 @@
 package dev.jeffrpowell.codingame.spring2023;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Scanner;
-import java.util.Set;
+import java.util.NoSuchElementException;
+import java.util.Random;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import javafx.geometry.Point3D;
-
 /**
- * Notes on the hexagonal coordinate system of this game and my implementation
+ * Notes on the hexagonal grid of this game
  * 
  * The game uses pointy-corner-up orientation for the hexagon orientation.
  * Any time the game rotates around, it always starts in the hex to the right, followed by a counterclockwise rotation.
@@ -29,36 +29,26 @@ import javafx.geometry.Point3D;
  *    4     6           -1     3
  * The game feeds you the hex grid in ascending hex-id order. This means that you'll receive them in ascending distance-from-0 order too.
  * Furthermore, when you receive a hex, you receive its neighbor hexes in the same rotation pattern described above ^.
- * Given this, you can easily make an id-to-cube-coordinate mapping as you iteratively receive the hexes at the start.
- * See https://www.redblobgames.com/grids/hexagons/#coordinates-cube for the hexagonal cube-coordinate system that this implementation leverages.
- *     -r+s   +q-r   
- * -q+s     0     +q-s
- *     -q+r   +r-s   
+ * Distances are walking distances over those neighbor links, see HexIndices.
  * 
  * STRATEGY & OPTIMIZATION TODOS
- * - Need to calculate min-span tree to create more of a highway network than a mass flood to reach all the resources
  * - When there are multiple paths to a target, pick the one that is closest to other resources
  * - Make sure I don't target a resource that is further away than I have number of ants (maybe even x2?)
  * - Take into account what my win-condition score is and leverage it to take shortcuts to closer crystals
  */
 public class Main {
     public static void main(String args[]) {
-        Scanner in = new Scanner(System.in);
-        // while (in.hasNextLine()) {
-        //     System.err.println(in.nextLine());
-        // }
+        InputReader in = new InputReader(System.in);
         int numberOfCells = in.nextInt(); // amount of hexagonal cells in this map
         HexIndices indices = generateHexGrid(in, numberOfCells);
         int numberOfBases = in.nextInt();
-        List<Point3D> bases = new ArrayList<>();
+        int[] bases = new int[numberOfBases];
         for (int i = 0; i < numberOfBases; i++) {
-            int myBaseIndex = in.nextInt();
-            bases.add(indices.idToHexMap.get(myBaseIndex).pt);
+            bases[i] = in.nextInt();
         }
-        List<Point3D> enemyBases = new ArrayList<>();
+        int[] enemyBases = new int[numberOfBases];
         for (int i = 0; i < numberOfBases; i++) {
-            int oppBaseIndex = in.nextInt();
-            enemyBases.add(indices.idToHexMap.get(oppBaseIndex).pt);
+            enemyBases[i] = in.nextInt();
         }
         Game g = new Game(numberOfCells, bases, enemyBases, indices);
         // game loop
@@ -67,205 +57,821 @@ public class Main {
         }
     }
 
-    private static class HexIndices{
-        Map<Point3D, Hex> ptToHexMap;
-        Map<Integer, Hex> idToHexMap;
+    /**
+     * Byte-level stand-in for Scanner: reads stdin through one reusable buffer and parses ints by hand.
+     * Only blocks for more input when the buffer runs dry, so a line the referee hasn't finished sending is simply waited on.
+     */
+    private static class InputReader {
+        private final InputStream stream;
+        private final byte[] buffer;
+        private int length;
+        private int pointer;
+
+        public InputReader(InputStream stream) {
+            this.stream = stream;
+            this.buffer = new byte[1 << 16];
+            this.length = 0;
+            this.pointer = 0;
+        }
 
-        public HexIndices(Map<Point3D, Hex> ptToHexMap, Map<Integer, Hex> idToHexMap) {
-            this.ptToHexMap = ptToHexMap;
-            this.idToHexMap = idToHexMap;
+        private int read() {
+            if (pointer == length) {
+                try {
+                    length = stream.read(buffer, 0, buffer.length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                pointer = 0;
+                if (length <= 0) {
+                    length = 0;
+                    return -1;
+                }
+            }
+            return buffer[pointer++] & 0xFF;
         }
 
-        public void putHex(Point3D pt, Hex h) {
-            idToHexMap.put(h.id, h);
-            ptToHexMap.put(pt, h);
+        public int nextInt() {
+            int c = read();
+            while (c != -1 && c <= ' ') {
+                c = read();
+            }
+            if (c == -1) {
+                throw new NoSuchElementException();
+            }
+            boolean negative = c == '-';
+            if (negative) {
+                c = read();
+            }
+            if (c < '0' || c > '9') {
+                throw new InputMismatchException("Expected a number, got '" + (char) c + "'");
+            }
+            int result = 0;
+            while (c >= '0' && c <= '9') {
+                result = result * 10 + (c - '0');
+                c = read();
+            }
+            if (c > ' ') {
+                throw new InputMismatchException("Expected a number, got '" + (char) c + "' after " + result);
+            }
+            return negative ? -result : result;
         }
+    }
 
-        public void putHex(int id, Hex h) {
-            idToHexMap.put(id, h);
-            ptToHexMap.put(h.pt, h);
+    /**
+     * Flat, id-indexed view of the hex grid. Everything is laid out in arrays so that the hot paths
+     * (pathfinding, per-turn updates) never have to hash a coordinate or allocate.
+     * neighbors[id * 6 + direction] holds the neighbor id in the game's rotation order, or -1 off the map.
+     * The map never changes after the initial input, so walking distances and next hops between every pair of
+     * cells are computed once up front with a BFS per cell; distances[from * numCells + to] is -1 if unreachable
+     * and nextHop[from * numCells + to] is the neighbor of from that starts a shortest path towards to.
+     */
+    private static class HexIndices{
+        final int numCells;
+        final Hex[] hexes;
+        final int[] neighbors;
+        final short[] distances;
+        final short[] nextHop;
+
+        public HexIndices(int numCells) {
+            this.numCells = numCells;
+            this.hexes = new Hex[numCells];
+            this.neighbors = new int[numCells * 6];
+            this.distances = new short[numCells * numCells];
+            this.nextHop = new short[numCells * numCells];
         }
 
-        public Hex getHex(Point3D pt) {
-            return ptToHexMap.get(pt);
+        public void putHex(Hex h, int[] neighborIds) {
+            hexes[h.id] = h;
+            System.arraycopy(neighborIds, 0, neighbors, h.id * 6, 6);
         }
 
         public Hex getHex(int id) {
-            return idToHexMap.get(id);
+            return hexes[id];
+        }
+
+        public int neighbor(int id, int direction) {
+            return neighbors[id * 6 + direction];
+        }
+
+        public int distance(int from, int to) {
+            return distances[from * numCells + to];
+        }
+
+        public int nextHop(int from, int to) {
+            return nextHop[from * numCells + to];
+        }
+
+        private void computeAllPairs() {
+            Arrays.fill(distances, (short) -1);
+            Arrays.fill(nextHop, (short) -1);
+            int[] queue = new int[numCells];
+            for (int to = 0; to < numCells; to++) {
+                int head = 0;
+                int tail = 0;
+                queue[tail++] = to;
+                distances[to * numCells + to] = 0;
+                nextHop[to * numCells + to] = (short) to;
+                while (head < tail) {
+                    int current = queue[head++];
+                    short nextDistance = (short) (distances[current * numCells + to] + 1);
+                    for (int i = 0; i < 6; i++) {
+                        int neighbor = neighbor(current, i);
+                        if (neighbor != -1 && distances[neighbor * numCells + to] == -1) {
+                            distances[neighbor * numCells + to] = nextDistance;
+                            nextHop[neighbor * numCells + to] = (short) current;
+                            queue[tail++] = neighbor;
+                        }
+                    }
+                }
+            }
         }
     }
-    private static HexIndices generateHexGrid(Scanner in, int numberOfCells) {
-        Map<Integer, HexBuilder> hexBuilderMap = new HashMap<>();
+    private static HexIndices generateHexGrid(InputReader in, int numberOfCells) {
+        HexIndices indices = new HexIndices(numberOfCells);
+        int[] neighbors = new int[6];
         for (int i = 0; i < numberOfCells; i++) {
             int type = in.nextInt(); // 0 for empty, 1 for eggs, 2 for crystal
             int initialResources = in.nextInt(); // the initial amount of eggs/crystals on this cell
-            int neigh0 = in.nextInt(); // the index of the neighbouring cell for each direction
-            int neigh1 = in.nextInt();
-            int neigh2 = in.nextInt();
-            int neigh3 = in.nextInt();
-            int neigh4 = in.nextInt();
-            int neigh5 = in.nextInt();
-            HexBuilder builder = new HexBuilder(i, type, initialResources, neigh0, neigh1, neigh2, neigh3, neigh4, neigh5);
-            if (i == 0) {
-                builder.pt = new Point3D(0, 0, 0);
-            }
-            hexBuilderMap.put(i, builder);
+            for (int n = 0; n < neighbors.length; n++) {
+                neighbors[n] = in.nextInt(); // the index of the neighbouring cell for each direction
+            }
+            indices.putHex(new Hex(i, type, initialResources), neighbors);
         }
-        for (int i = 0; i < numberOfCells; i++) {
-            hexBuilderMap.get(i).setPts(hexBuilderMap);
+        indices.computeAllPairs();
+        return indices;
+    }
+
+    /**
+     * A* that never allocates once constructed. Among all shortest paths it prefers the one that runs over the most
+     * cells that still have resources on them, so the ants we line up along a path harvest on the way.
+     * That preference is folded into a single int cost: each step costs stepCost, minus one if the cell entered has
+     * resources. The heuristic is the precomputed walking distance times (stepCost - 1), which keeps it consistent.
+     * Scores and parents live in arrays that are reused between calls; an epoch stamp tells which entries belong to
+     * the current search instead of clearing them every time.
+     */
+    private static class PathFinder{
+        private final HexIndices indices;
+        private final BoardState board;
+        private final int stepCost;
+        private final int[] gScore;
+        private final int[] parent;
+        private final int[] seenStamp;
+        private final int[] closedStamp;
+        private final long[] heap;
+        private int heapSize;
+        private int epoch;
+
+        public PathFinder(HexIndices indices, BoardState board) {
+            this.indices = indices;
+            this.board = board;
+            this.stepCost = indices.numCells + 1;
+            this.gScore = new int[indices.numCells];
+            this.parent = new int[indices.numCells];
+            this.seenStamp = new int[indices.numCells];
+            this.closedStamp = new int[indices.numCells];
+            this.heap = new long[indices.numCells * 6 + 1];
+            this.heapSize = 0;
+            this.epoch = 0;
         }
-        if (hexBuilderMap.get(1).needsNeighborPtsStill()) {
-            //edge case where hex 0 was not in the center and thus separated from hex 1
-            //one more pump should do the trick
-            for (int i = 0; i < numberOfCells; i++) {
-                hexBuilderMap.get(i).setPts(hexBuilderMap);
+
+        /**
+         * Fills path with the cells from -> to, both ends included.
+         * Returns the number of cells written, or 0 if to can't be reached.
+         */
+        public int findPath(int from, int to, int[] path) {
+            if (indices.distance(from, to) == -1) {
+                return 0;
             }
+            epoch++;
+            heapSize = 0;
+            gScore[from] = 0;
+            parent[from] = -1;
+            seenStamp[from] = epoch;
+            push(heuristic(from, to), from);
+            while (heapSize > 0) {
+                int current = pop();
+                if (closedStamp[current] == epoch) {
+                    continue;
+                }
+                closedStamp[current] = epoch;
+                if (current == to) {
+                    return reconstruct(to, path);
+                }
+                for (int i = 0; i < 6; i++) {
+                    int neighbor = indices.neighbor(current, i);
+                    if (neighbor == -1 || closedStamp[neighbor] == epoch) {
+                        continue;
+                    }
+                    int tentative = gScore[current] + stepCost - (board.resources[neighbor] > 0 ? 1 : 0);
+                    if (seenStamp[neighbor] != epoch || tentative < gScore[neighbor]) {
+                        seenStamp[neighbor] = epoch;
+                        gScore[neighbor] = tentative;
+                        parent[neighbor] = current;
+                        push(tentative + heuristic(neighbor, to), neighbor);
+                    }
+                }
+            }
+            return 0;
+        }
+
+        private int heuristic(int id, int to) {
+            return indices.distance(id, to) * (stepCost - 1);
+        }
+
+        private int reconstruct(int to, int[] path) {
+            int length = 0;
+            for (int id = to; id != -1; id = parent[id]) {
+                path[length++] = id;
+            }
+            for (int i = 0, j = length - 1; i < j; i++, j--) {
+                int swap = path[i];
+                path[i] = path[j];
+                path[j] = swap;
+            }
+            return length;
         }
-        Map<Point3D, Hex> ptToHexMap = new HashMap<>();
-        Map<Integer, Hex> idToHexMap = new HashMap<>();
-        for (HexBuilder builder : hexBuilderMap.values()) {
-            Hex h = new Hex(builder.id, builder.pt, builder.type, builder.initialResources, 0, 0);
-            ptToHexMap.put(builder.pt, h);
-            idToHexMap.put(builder.id, h);
-            for (int i = 0; i < builder.neighbor.length; i++) {
-                if (builder.neighbor[i] == -1) {
-                    Hex emptyHex = new Hex(-1, builder.neighborPts.get(i), -1, 0, 0 ,0);
-                    ptToHexMap.put(builder.neighborPts.get(i), emptyHex);    
+
+        private void push(int fScore, int id) {
+            int i = heapSize++;
+            long entry = ((long) fScore << 32) | id;
+            while (i > 0) {
+                int up = (i - 1) >> 1;
+                if (heap[up] <= entry) {
+                    break;
+                }
+                heap[i] = heap[up];
+                i = up;
+            }
+            heap[i] = entry;
+        }
+
+        private int pop() {
+            int top = (int) heap[0];
+            long last = heap[--heapSize];
+            int i = 0;
+            int half = heapSize >> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
                 }
+                heap[i] = heap[child];
+                i = child;
             }
+            heap[i] = last;
+            return top;
         }
-        return new HexIndices(ptToHexMap, idToHexMap);
     }
 
-    private static class HexBuilder{
-        int id;
-        int type;
-        int initialResources;
-        int[] neighbor = new int[6];
-        List<Point3D> neighborPts;
-        Point3D pt;
+    /**
+     * Multi-source BFS: one pass from a whole set of sources labels every cell with the walking distance to its
+     * nearest source. Unreached cells have a distance of -1. The arrays are reused between runs.
+     */
+    private static class DistanceField{
+        private final HexIndices indices;
+        private final int[] distance;
+        private final int[] queue;
 
-        public HexBuilder(int id, int type, int initialResources, int... neighbors) {
-            this.id = id;
-            this.type = type;
-            this.initialResources = initialResources;
-            this.neighbor = neighbors;
-            this.neighborPts = Stream.generate(()->(Point3D)null).limit(6).collect(Collectors.toList());
-            this.pt = null;
+        public DistanceField(HexIndices indices) {
+            this.indices = indices;
+            this.distance = new int[indices.numCells];
+            this.queue = new int[indices.numCells];
         }
 
-        public boolean needsNeighborPtsStill() {
-            return neighborPts.stream().anyMatch(pt -> pt == null);
+        public void run(int[] sources, int count) {
+            Arrays.fill(distance, -1);
+            int head = 0;
+            int tail = 0;
+            for (int i = 0; i < count; i++) {
+                int source = sources[i];
+                if (distance[source] == -1) {
+                    distance[source] = 0;
+                    queue[tail++] = source;
+                }
+            }
+            while (head < tail) {
+                int current = queue[head++];
+                for (int i = 0; i < 6; i++) {
+                    int neighbor = indices.neighbor(current, i);
+                    if (neighbor != -1 && distance[neighbor] == -1) {
+                        distance[neighbor] = distance[current] + 1;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
         }
 
-        public void setPts(Map<Integer, HexBuilder> hexBuilderMap) {
-            for (int i = 0; i < neighbor.length; i++) {
-                if (hexBuilderMap.containsKey(neighbor[i]) && hexBuilderMap.get(neighbor[i]).pt != null) {
-                    neighborPts.set(i, hexBuilderMap.get(neighbor[i]).pt);
-                    if (pt == null) {
-                        pt = getPtFromNeighborPt(hexBuilderMap.get(neighbor[i]).pt, i);
+        public int distance(int id) {
+            return distance[id];
+        }
+    }
+
+    /**
+     * Greedy Steiner tree approximation for laying out beacons: starting from the bases, repeatedly attach the target
+     * that is closest to anything already in the tree, by way of the PathFinder's resource-preferring shortest path.
+     * Sharing corridors this way needs far fewer beacon cells than one independent path per target.
+     * Closest-to-tree distances come from the precomputed distance table and are only touched for the cells added in
+     * each attachment. The nearest target is always attached; the deadline is checked before each attachment after
+     * that, and if it passes, the tree built so far is returned, which always covers the nearest targets first.
+     */
+    private static class SteinerPlanner{
+        private final HexIndices indices;
+        private final PathFinder pathFinder;
+        private final int[] treeStamp;
+        private final int[] treeCells;
+        private final int[] targetDistance;
+        private final int[] attachCell;
+        private final int[] pathBuffer;
+        private int treeSize;
+        private int epoch;
+
+        public SteinerPlanner(HexIndices indices, PathFinder pathFinder) {
+            this.indices = indices;
+            this.pathFinder = pathFinder;
+            this.treeStamp = new int[indices.numCells];
+            this.treeCells = new int[indices.numCells];
+            this.targetDistance = new int[indices.numCells];
+            this.attachCell = new int[indices.numCells];
+            this.pathBuffer = new int[indices.numCells];
+            this.treeSize = 0;
+            this.epoch = 0;
+        }
+
+        /**
+         * Connects as many targets as the deadline allows to the roots and returns the number of cells in the tree,
+         * readable through cell(i). The nearest target is connected even if the deadline has already passed.
+         * Returns 0 if no target is reachable.
+         */
+        public int plan(int[] roots, int rootCount, int[] targets, int targetCount, long deadlineNanos) {
+            epoch++;
+            treeSize = 0;
+            for (int i = 0; i < rootCount; i++) {
+                addToTree(roots[i]);
+            }
+            for (int t = 0; t < targetCount; t++) {
+                targetDistance[t] = -1;
+                for (int i = 0; i < rootCount; i++) {
+                    relax(t, targets[t], roots[i]);
+                }
+            }
+            boolean attachedAny = false;
+            while (!attachedAny || System.nanoTime() < deadlineNanos) {
+                int next = -1;
+                for (int t = 0; t < targetCount; t++) {
+                    if (targetDistance[t] > 0 && (next == -1 || targetDistance[t] < targetDistance[next])) {
+                        next = t;
+                    }
+                }
+                if (next == -1) {
+                    break;
+                }
+                int length = pathFinder.findPath(attachCell[next], targets[next], pathBuffer);
+                for (int i = 0; i < length; i++) {
+                    int cell = pathBuffer[i];
+                    if (treeStamp[cell] == epoch) {
+                        continue;
+                    }
+                    addToTree(cell);
+                    for (int t = 0; t < targetCount; t++) {
+                        relax(t, targets[t], cell);
                     }
                 }
+                targetDistance[next] = 0;
+                attachedAny = true;
             }
-            if (pt == null) {
-                return;
+            return attachedAny ? treeSize : 0;
+        }
+
+        public int cell(int i) {
+            return treeCells[i];
+        }
+
+        private void addToTree(int cell) {
+            treeStamp[cell] = epoch;
+            treeCells[treeSize++] = cell;
+        }
+
+        private void relax(int t, int target, int treeCell) {
+            int distance = indices.distance(treeCell, target);
+            if (distance != -1 && (targetDistance[t] == -1 || distance < targetDistance[t])) {
+                targetDistance[t] = distance;
+                attachCell[t] = treeCell;
             }
-            for (int i = 0; i < neighbor.length; i++) {
-                if (neighborPts.get(i) == null) {
-                    switch (i) {
-                        case 0:
-                            neighborPts.set(i, getPtFromNeighborPt(pt, 3));
-                            break;
-                        case 1:
-                            neighborPts.set(i, getPtFromNeighborPt(pt, 4));
-                            break;
-                        case 2:
-                            neighborPts.set(i, getPtFromNeighborPt(pt, 5));
-                            break;
-                        case 3:
-                            neighborPts.set(i, getPtFromNeighborPt(pt, 0));
-                            break;
-                        case 4:
-                            neighborPts.set(i, getPtFromNeighborPt(pt, 1));
-                            break;
-                        default:
-                            neighborPts.set(i, getPtFromNeighborPt(pt, 2));
-                            break;
+        }
+    }
+
+    /**
+     * Local stand-in for the referee's ant movement and harvest rules, used to score beacon layouts before sending them.
+     * My understanding of the referee, which this follows:
+     * - Each player's ants are split over their beacons in proportion to beacon strength.
+     * - Ant cells are paired with beacons closest-first, and each group moves one cell along a shortest path.
+     * - A resource cell is harvested along the strongest chain of cells holding our ants back to one of our bases,
+     *   up to the weakest link in that chain.
+     * - A cell shared with the opponent can't be part of our chain if their chain to it is stronger than ours.
+     * The opponent's ants are assumed to hold still for the turn being predicted.
+     *
+     * prepare() does everything that only depends on where the ants and beacons are: the closest-first pairing order
+     * and the opponent's chain strengths. evaluate() then only depends on beacon strengths, runs in time linear in the
+     * number of pairs and cells, and never allocates, so it can sit in the inner loop of a search.
+     */
+    private static class AntSimulator{
+        private final HexIndices indices;
+        private final BoardState board;
+        private final int[] bases;
+        private final int[] enemyBases;
+        private final int[] beaconCells;
+        private final int[] antCells;
+        private final long[] pairs;
+        private final int[] wanted;
+        private final long[] remainders;
+        private final int[] antsLeft;
+        private final int[] myChain;
+        private final int[] oppChain;
+        private final int[] harvestChain;
+        private final long[] heap;
+        final int[] nextAnts;
+        private int beaconCount;
+        private int antCellCount;
+        private int pairCount;
+        int harvestedCrystals;
+        int harvestedEggs;
+
+        public AntSimulator(HexIndices indices, BoardState board, int[] bases, int[] enemyBases) {
+            this.indices = indices;
+            this.board = board;
+            this.bases = bases;
+            this.enemyBases = enemyBases;
+            this.beaconCells = new int[indices.numCells];
+            this.antCells = new int[indices.numCells];
+            this.pairs = new long[indices.numCells * indices.numCells];
+            this.wanted = new int[indices.numCells];
+            this.remainders = new long[indices.numCells];
+            this.antsLeft = new int[indices.numCells];
+            this.myChain = new int[indices.numCells];
+            this.oppChain = new int[indices.numCells];
+            this.harvestChain = new int[indices.numCells];
+            this.heap = new long[indices.numCells * 6 + bases.length + 1];
+            this.nextAnts = new int[indices.numCells];
+        }
+
+        /**
+         * Snapshots the current ant positions and the set of cells that may carry a beacon this turn.
+         */
+        public void prepare(int[] candidateBeacons, int count) {
+            beaconCount = count;
+            System.arraycopy(candidateBeacons, 0, beaconCells, 0, count);
+            antCellCount = 0;
+            for (int id = 0; id < indices.numCells; id++) {
+                if (board.myAnts[id] > 0) {
+                    antCells[antCellCount++] = id;
+                }
+            }
+            pairCount = 0;
+            for (int a = 0; a < antCellCount; a++) {
+                for (int b = 0; b < beaconCount; b++) {
+                    int distance = indices.distance(antCells[a], beaconCells[b]);
+                    if (distance != -1) {
+                        pairs[pairCount++] = ((long) distance << 40) | ((long) a << 20) | b;
                     }
                 }
-                if (neighbor[i] != -1) {
-                    hexBuilderMap.get(neighbor[i]).pt = neighborPts.get(i);
+            }
+            Arrays.sort(pairs, 0, pairCount);
+            widestChains(board.oppAnts, enemyBases, null, oppChain);
+        }
+
+        /**
+         * Predicts next turn's ant positions (nextAnts) and what they harvest, given a strength for each of the prepared
+         * beacon cells (same order as passed to prepare). A strength of 0 means no beacon on that cell.
+         */
+        public void evaluate(int[] strengths) {
+            Arrays.fill(nextAnts, 0);
+            long totalStrength = 0;
+            for (int b = 0; b < beaconCount; b++) {
+                totalStrength += strengths[b];
+            }
+            if (totalStrength == 0) {
+                System.arraycopy(board.myAnts, 0, nextAnts, 0, indices.numCells);
+            }
+            else {
+                allocateAndMove(strengths, totalStrength);
+            }
+            harvest();
+        }
+
+        private void allocateAndMove(int[] strengths, long totalStrength) {
+            int total = board.myAntTotal;
+            int assigned = 0;
+            for (int b = 0; b < beaconCount; b++) {
+                wanted[b] = (int) (total * strengths[b] / totalStrength);
+                remainders[b] = strengths[b] == 0 ? -1 : (total * strengths[b]) % totalStrength;
+                assigned += wanted[b];
+            }
+            //hand out the rounding leftovers to the beacons that lost the most to flooring
+            while (assigned < total) {
+                int best = 0;
+                for (int b = 1; b < beaconCount; b++) {
+                    if (remainders[b] > remainders[best]) {
+                        best = b;
+                    }
+                }
+                wanted[best]++;
+                remainders[best] = -1;
+                assigned++;
+            }
+            for (int a = 0; a < antCellCount; a++) {
+                antsLeft[a] = board.myAnts[antCells[a]];
+            }
+            for (int p = 0; p < pairCount; p++) {
+                int a = (int) ((pairs[p] >> 20) & 0xFFFFF);
+                int b = (int) (pairs[p] & 0xFFFFF);
+                int amount = Math.min(antsLeft[a], wanted[b]);
+                if (amount == 0) {
+                    continue;
+                }
+                antsLeft[a] -= amount;
+                wanted[b] -= amount;
+                int from = antCells[a];
+                int to = beaconCells[b];
+                nextAnts[from == to ? from : indices.nextHop(from, to)] += amount;
+            }
+            for (int a = 0; a < antCellCount; a++) {
+                nextAnts[antCells[a]] += antsLeft[a];
+            }
+        }
+
+        private void harvest() {
+            widestChains(nextAnts, bases, null, myChain);
+            widestChains(nextAnts, bases, myChain, harvestChain);
+            harvestedCrystals = 0;
+            harvestedEggs = 0;
+            for (int id = 0; id < indices.numCells; id++) {
+                if (harvestChain[id] == 0 || board.resources[id] == 0) {
+                    continue;
+                }
+                int amount = Math.min(board.resources[id], harvestChain[id]);
+                if (indices.getHex(id).type == 1) {
+                    harvestedEggs += amount;
+                }
+                else {
+                    harvestedCrystals += amount;
+                }
+            }
+        }
+
+        /**
+         * Bottleneck Dijkstra: chain[id] is the best "weakest link" over all paths of occupied cells from a base to id.
+         * When myAttack is given, cells where the opponent's chain beats ours are treated as empty.
+         */
+        private void widestChains(int[] ants, int[] sources, int[] myAttack, int[] chain) {
+            Arrays.fill(chain, 0);
+            int heapSize = 0;
+            for (int source : sources) {
+                if (usable(source, ants, myAttack) && ants[source] > chain[source]) {
+                    chain[source] = ants[source];
+                    heapSize = push(heapSize, chain[source], source);
+                }
+            }
+            while (heapSize > 0) {
+                long top = heap[0];
+                heapSize = pop(heapSize);
+                int current = (int) top;
+                int width = Integer.MAX_VALUE - (int) (top >>> 32);
+                if (width < chain[current]) {
+                    continue;
+                }
+                for (int i = 0; i < 6; i++) {
+                    int neighbor = indices.neighbor(current, i);
+                    if (neighbor == -1 || !usable(neighbor, ants, myAttack)) {
+                        continue;
+                    }
+                    int candidate = Math.min(width, ants[neighbor]);
+                    if (candidate > chain[neighbor]) {
+                        chain[neighbor] = candidate;
+                        heapSize = push(heapSize, candidate, neighbor);
+                    }
+                }
+            }
+        }
+
+        private boolean usable(int id, int[] ants, int[] myAttack) {
+            if (ants[id] == 0) {
+                return false;
+            }
+            return myAttack == null || board.oppAnts[id] == 0 || oppChain[id] <= myAttack[id];
+        }
+
+        private int push(int heapSize, int width, int id) {
+            //max-heap on width, stored as a min-heap on the complement
+            long entry = ((long) (Integer.MAX_VALUE - width) << 32) | id;
+            int i = heapSize++;
+            while (i > 0) {
+                int up = (i - 1) >> 1;
+                if (heap[up] <= entry) {
+                    break;
                 }
+                heap[i] = heap[up];
+                i = up;
             }
+            heap[i] = entry;
+            return heapSize;
         }
 
-        private Point3D getPtFromNeighborPt(Point3D neighbor, int neighborRelativePositionIndex) {
-            switch (neighborRelativePositionIndex) {
-                case 0:
-                    return neighbor.add(-1, 0, 1);
-                case 1:
-                    return neighbor.add(-1, 1, 0);
-                case 2:
-                    return neighbor.add(0, 1, -1);
-                case 3:
-                    return neighbor.add(1, 0, -1);
-                case 4:
-                    return neighbor.add(1, -1, 0);
-                default:
-                    return neighbor.add(0, -1, 1);
+        private int pop(int heapSize) {
+            long last = heap[--heapSize];
+            int i = 0;
+            int half = heapSize >> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
             }
+            heap[i] = last;
+            return heapSize;
+        }
+    }
+
+    /**
+     * Anytime hill climber over beacon strengths. It starts from every beacon at strength 1 (the plain flood) and keeps
+     * nudging one beacon's strength at a time, scoring each layout with the AntSimulator. Moves that score at least as
+     * well are kept so it can drift across plateaus, but only a strict improvement replaces the best layout, which is
+     * always what's returned however early the deadline hits.
+     */
+    private static class BeaconOptimizer{
+        private static final int MAX_STRENGTH = 10;
+        private static final int HARVEST_WEIGHT = 100;
+        private final AntSimulator simulator;
+        private final int[] cells;
+        private final int[] strengths;
+        final int[] best;
+        private final Random random;
+        private int cellCount;
+
+        public BeaconOptimizer(AntSimulator simulator, int numCells) {
+            this.simulator = simulator;
+            this.cells = new int[numCells];
+            this.strengths = new int[numCells];
+            this.best = new int[numCells];
+            this.random = new Random(2023);
+        }
+
+        /**
+         * Tunes a strength for each of the given beacon cells until the deadline; the answer is left in best,
+         * in the same order as cells.
+         */
+        public void optimize(int[] beaconCells, int count, int eggWeight, long deadlineNanos) {
+            cellCount = count;
+            System.arraycopy(beaconCells, 0, cells, 0, count);
+            Arrays.fill(strengths, 0, count, 1);
+            Arrays.fill(best, 0, count, 1);
+            if (count < 2) {
+                return;
+            }
+            simulator.prepare(cells, count);
+            int currentScore = score(eggWeight);
+            int bestScore = currentScore;
+            int iterations = 0;
+            while ((++iterations & 63) != 0 || System.nanoTime() < deadlineNanos) {
+                int b = random.nextInt(count);
+                int old = strengths[b];
+                int tweaked = old + (random.nextBoolean() ? 1 : -1) * (1 + random.nextInt(2));
+                if (tweaked < 1 || tweaked > MAX_STRENGTH) {
+                    continue;
+                }
+                strengths[b] = tweaked;
+                int tweakedScore = score(eggWeight);
+                if (tweakedScore < currentScore) {
+                    strengths[b] = old;
+                    continue;
+                }
+                currentScore = tweakedScore;
+                if (tweakedScore > bestScore) {
+                    bestScore = tweakedScore;
+                    System.arraycopy(strengths, 0, best, 0, count);
+                }
+            }
+        }
+
+        /**
+         * What the ants harvest next turn comes first; after that, reward layouts that put ants on more of the beacon
+         * cells, since a chain only harvests once every link is occupied.
+         */
+        private int score(int eggWeight) {
+            simulator.evaluate(strengths);
+            int covered = 0;
+            for (int i = 0; i < cellCount; i++) {
+                if (simulator.nextAnts[cells[i]] > 0) {
+                    covered++;
+                }
+            }
+            return HARVEST_WEIGHT * (simulator.harvestedCrystals + eggWeight * simulator.harvestedEggs) + covered;
         }
     }
 
     public static class Hex{
         int id;
-        Point3D pt;
         int type;
-        int resources;
-        int myAnts;
-        int enemyAnts;
+        int initialResources;
         
-        public Hex(int id, Point3D pt, int type, int resources, int myAnts, int enemyAnts) {
+        public Hex(int id, int type, int initialResources) {
             this.id = id;
-            this.pt = pt;
             this.type = type;
-            this.resources = resources;
-            this.myAnts = myAnts;
-            this.enemyAnts = enemyAnts;
+            this.initialResources = initialResources;
         }
         public int id() {
             return this.id;
         }
-        public Point3D pt() {
-            return this.pt;
+    }
+
+    /**
+     * The part of the board that changes every turn, kept as parallel arrays indexed by hex id and overwritten in place.
+     * Resources never grow back, so whenever a cell runs dry it's recorded in depleted for this turn; that lets
+     * callers retire it from their own bookkeeping without rescanning the board.
+     */
+    private static class BoardState{
+        final int[] resources;
+        final int[] myAnts;
+        final int[] oppAnts;
+        final int[] depleted;
+        int depletedCount;
+        int myAntTotal;
+        int oppAntTotal;
+
+        public BoardState(HexIndices indices) {
+            this.resources = new int[indices.numCells];
+            this.myAnts = new int[indices.numCells];
+            this.oppAnts = new int[indices.numCells];
+            this.depleted = new int[indices.numCells];
+            for (Hex h : indices.hexes) {
+                resources[h.id] = h.initialResources;
+            }
+        }
+
+        public void startTurn() {
+            depletedCount = 0;
+            myAntTotal = 0;
+            oppAntTotal = 0;
+        }
+
+        public void update(int id, int resourcesOnCell, int myAntsOnCell, int oppAntsOnCell) {
+            if (resources[id] > 0 && resourcesOnCell == 0) {
+                depleted[depletedCount++] = id;
+            }
+            resources[id] = resourcesOnCell;
+            myAnts[id] = myAntsOnCell;
+            oppAnts[id] = oppAntsOnCell;
+            myAntTotal += myAntsOnCell;
+            oppAntTotal += oppAntsOnCell;
         }
     }
 
     private static class Game{
+        //CodinGame allows 100ms per turn, counted from when it sends the first line; leave headroom for printing and GC
+        private static final long PLANNING_BUDGET_NANOS = 50_000_000L;
+        private static final long TURN_BUDGET_NANOS = 80_000_000L;
         private final int numCells;
-        private final List<Point3D> bases;
-        private final List<Point3D> enemyBases;
+        private final int[] bases;
+        private final int[] enemyBases;
         private final HexIndices indices;
-        private List<Integer> eggSpots;
-        private List<Integer> crystalSpots;
-        private Map<Integer, Integer> crystalSpotsCoveredByEnemies;
+        private final BoardState board;
+        private final List<Integer> eggSpots;
+        private final List<Integer> crystalSpots;
         private boolean earlyGame;
         private Collection<Beacon> lastBeacons;
         private Map<Integer, Beacon> beacons;
-        private int enemyAnts;
-        private int myAnts;
         private int startingAnts;
         private boolean earlyFloodThresholdSet;
         private int earlyFloodDistanceThreshold;
+        private final int[] targetBuffer;
+        private final PathFinder pathFinder;
+        private final DistanceField baseField;
+        private final SteinerPlanner steinerPlanner;
+        private final BeaconOptimizer beaconOptimizer;
+        private long turnStartNanos;
 
-        public Game(int numCells, List<Point3D> bases, List<Point3D> enemyBases, HexIndices indices) {
+        public Game(int numCells, int[] bases, int[] enemyBases, HexIndices indices) {
             this.numCells = numCells;
             this.bases = bases;
             this.enemyBases = enemyBases;
             this.indices = indices;
-            this.eggSpots = indices.idToHexMap.values().stream().filter(h -> h.type == 1).map(Hex::id).collect(Collectors.toList());
-            this.crystalSpots = indices.idToHexMap.values().stream().filter(h -> h.type == 2).map(Hex::id).collect(Collectors.toList());
-            this.crystalSpotsCoveredByEnemies = new HashMap<>();
+            this.board = new BoardState(indices);
+            this.eggSpots = Stream.of(indices.hexes).filter(h -> h.type == 1 && h.initialResources > 0).map(Hex::id).collect(Collectors.toList());
+            this.crystalSpots = Stream.of(indices.hexes).filter(h -> h.type == 2 && h.initialResources > 0).map(Hex::id).collect(Collectors.toList());
+            this.targetBuffer = new int[numCells];
+            this.pathFinder = new PathFinder(indices, board);
+            this.steinerPlanner = new SteinerPlanner(indices, pathFinder);
+            this.beaconOptimizer = new BeaconOptimizer(new AntSimulator(indices, board, bases, enemyBases), numCells);
+            //bases never move, so one multi-source pass labels every cell with its closest base for the whole game
+            this.baseField = new DistanceField(indices);
+            this.baseField.run(bases, bases.length);
             this.beacons = new HashMap<>();
             this.earlyGame = true;
             this.lastBeacons = new ArrayList<>();
@@ -274,26 +880,21 @@ public class Main {
             this.earlyFloodDistanceThreshold = 2;
         }
         
-        public String gameLoop(Scanner in) {
+        public String gameLoop(InputReader in) {
             clearLastTurnState();
             for (int i = 0; i < numCells; i++) {
                 int resources = in.nextInt(); // the current amount of eggs/crystals on this cell
+                if (i == 0) {
+                    //the referee's clock starts when it sends this line, not when we get around to parsing it
+                    turnStartNanos = System.nanoTime();
+                }
                 int myAntsOnCell = in.nextInt(); // the amount of your ants on this cell
                 int oppAntsOnCell = in.nextInt(); // the amount of opponent ants on this cell
-                this.myAnts += myAntsOnCell;
-                this.enemyAnts += oppAntsOnCell;
-                Hex h = indices.getHex(i);
-                indices.putHex(i, new Hex(h.id, h.pt, h.type, resources, myAntsOnCell, oppAntsOnCell));
-                if (h.type == 1 && resources > 0) {
-                    eggSpots.add(h.id);
-                }
-                else if (h.type == 2 && resources > 0) {
-                    crystalSpots.add(h.id);
-                    crystalSpotsCoveredByEnemies.put(h.id, oppAntsOnCell);
-                }
+                board.update(i, resources, myAntsOnCell, oppAntsOnCell);
             }
+            retireDepletedSpots();
             if (startingAnts == 0) {
-                startingAnts = myAnts;
+                startingAnts = board.myAntTotal;
             }
             decideBeacons();
             if (beacons.isEmpty()) {
@@ -304,20 +905,20 @@ public class Main {
         }
 
         private void clearLastTurnState() {
-            for (Integer id : eggSpots) {
-                Hex h = indices.getHex(id);
-                indices.putHex(id, new Hex(h.id, h.pt, h.type, 0, 0, 0));
-            }
-            for (Integer id : crystalSpots) {
-                Hex h = indices.getHex(id);
-                indices.putHex(id, new Hex(h.id, h.pt, h.type, 0, 0, 0));
-            }
-            eggSpots.clear();
-            crystalSpots.clear();
-            crystalSpotsCoveredByEnemies.clear();
+            board.startTurn();
             beacons.clear();
-            myAnts = 0;
-            enemyAnts = 0;
+        }
+
+        private void retireDepletedSpots() {
+            for (int i = 0; i < board.depletedCount; i++) {
+                Integer id = board.depleted[i];
+                if (indices.getHex(id).type == 1) {
+                    eggSpots.remove(id);
+                }
+                else {
+                    crystalSpots.remove(id);
+                }
+            }
         }
         
         private static class Beacon{
@@ -330,7 +931,7 @@ public class Main {
         }
 
         private void addBeacon(Beacon b) {
-            beacons.merge(b.id, b, (b1, b2) -> new Beacon(b1.id, 1));
+            beacons.put(b.id, b);
         }
 
         private void decideBeacons() {
@@ -346,13 +947,11 @@ public class Main {
         }
 
         private void earlyFlood() {
-            Map<Integer, List<ClosestBase>> pathToAllEggs = eggSpots.stream()
-                .map(eggId -> getClosestBaseToTarget(bases, indices.getHex(eggId).pt))
-                .collect(Collectors.groupingBy(cb -> cb.bestPath.history.size() - 1));
-            Map<Integer, List<ClosestBase>> pathToAllCrystals = crystalSpots.stream()
-                .map(crystalId -> getClosestBaseToTarget(bases, indices.getHex(crystalId).pt))
-                .collect(Collectors.groupingBy(cb -> cb.bestPath.history.size() - 1));
-            int closestEggDistance = pathToAllEggs.keySet().stream().min(Comparator.naturalOrder()).get();
+            int closestEggDistance = eggSpots.stream()
+                .mapToInt(baseField::distance)
+                .filter(distance -> distance != -1)
+                .min()
+                .orElse(Integer.MAX_VALUE);
             if (!earlyFloodThresholdSet) {
                 earlyFloodDistanceThreshold = Math.max(2, closestEggDistance);
                 earlyFloodThresholdSet = true;
@@ -362,134 +961,54 @@ public class Main {
                 lateFlood();
             }
             else {
-                for (int i = 1; i <= earlyFloodDistanceThreshold; i++) {
-                    if (pathToAllEggs.containsKey(i)){
-                        pathToAllEggs.get(i).forEach(ClosestBase::addBeacons);
-                    }
-                    if (pathToAllCrystals.containsKey(i)){
-                        pathToAllCrystals.get(i).forEach(ClosestBase::addBeacons);
-                    }
-                }
+                int targetCount = 0;
+                targetCount = addTargetsInRange(eggSpots, targetCount);
+                targetCount = addTargetsInRange(crystalSpots, targetCount);
+                connectTargets(targetCount);
             }
         }
 
-        private void lateFlood() {
-            if (!iHaveEnoughAnts() && crystalSpots.size() > 4) {
-                eggSpots.stream()
-                    .map(eggId -> getClosestBaseToTarget(bases, indices.getHex(eggId).pt))
-                    .forEach(ClosestBase::addBeacons);
+        private int addTargetsInRange(List<Integer> spots, int targetCount) {
+            for (int id : spots) {
+                int distance = baseField.distance(id);
+                if (distance >= 1 && distance <= earlyFloodDistanceThreshold) {
+                    targetBuffer[targetCount++] = id;
+                }
             }
-            crystalSpots.stream()
-                .map(crystalId -> getClosestBaseToTarget(bases, indices.getHex(crystalId).pt))
-                .forEach(ClosestBase::addBeacons);
-        }
-
-        private boolean iHaveEnoughAnts() {
-            return myAnts > 1.5 * enemyAnts;
-        }
-
-        private boolean needToShortCircuit() {
-            return eggSpots.isEmpty()
-                || crystalSpots.size() < 5;
+            return targetCount;
         }
 
-        private class ClosestBase{
-            Point3D base;
-            SearchNode bestPath;
-            public ClosestBase(Point3D base, SearchNode bestPath) {
-                this.base = base;
-                this.bestPath = bestPath;
-            }
-            
-            public void addBeacons() {
-                for (Point3D pt : bestPath.history) {
-                    addBeacon(new Beacon(indices.getHex(pt).id, 1));
+        private void lateFlood() {
+            int targetCount = 0;
+            if (!iHaveEnoughAnts() && crystalSpots.size() > 4) {
+                for (int id : eggSpots) {
+                    targetBuffer[targetCount++] = id;
                 }
             }
-        }
-        private ClosestBase getClosestBaseToTarget(List<Point3D> baseList, Point3D target) {
-            ClosestBase closest = new ClosestBase(null, new SearchNode(null, Double.MAX_VALUE, new ArrayList<>()));
-            for (Point3D base : baseList) {
-                SearchNode bestPath = getPathFromBaseToPt(base, target);
-                if (bestPath != null && bestPath.distance < closest.bestPath.distance) {
-                    closest = new ClosestBase(base, bestPath);
-                }
+            for (int id : crystalSpots) {
+                targetBuffer[targetCount++] = id;
             }
-            return closest;
+            connectTargets(targetCount);
         }
 
-        private class SearchNode {
-            Point3D pt;
-            double distance;
-            List<Point3D> history;
-            
-            public SearchNode(Point3D pt, double distance, List<Point3D> history) {
-                this.pt = pt;
-                this.distance = distance;
-                this.history = history;
-                this.history.add(pt);
+        private void connectTargets(int targetCount) {
+            int treeSize = steinerPlanner.plan(bases, bases.length, targetBuffer, targetCount, turnStartNanos + PLANNING_BUDGET_NANOS);
+            for (int i = 0; i < treeSize; i++) {
+                targetBuffer[i] = steinerPlanner.cell(i);
             }
-
-            public double heuristic(Point3D target) {
-                return distance + pt.distance(target);
+            beaconOptimizer.optimize(targetBuffer, treeSize, earlyGame ? 2 : 1, turnStartNanos + TURN_BUDGET_NANOS);
+            for (int i = 0; i < treeSize; i++) {
+                addBeacon(new Beacon(targetBuffer[i], beaconOptimizer.best[i]));
             }
+        }
 
-            public long numResourcesInPath() {
-                return history.stream()
-                    .map(indices::getHex)
-                    .filter(h -> h.type > 0)
-                    .count();
-            }
+        private boolean iHaveEnoughAnts() {
+            return board.myAntTotal > 1.5 * board.oppAntTotal;
         }
-        private SearchNode getPathFromBaseToPt(Point3D base, Point3D target) {
-            PriorityQueue<SearchNode> q = new PriorityQueue<>(Comparator.comparingDouble(s -> s.heuristic(target)));
-            Set<Point3D> visited = new HashSet<>();
-            SearchNode contender = null;
-            double contenderMaxDistance = -1;
-            long resourceHexesToBeat = -1;
-            q.add(new SearchNode(base, 0, new ArrayList<>()));
-            while (!q.isEmpty()) {
-                SearchNode n = q.poll();
-                if (n.pt.equals(target)) {
-                    if (contenderMaxDistance == -1) {
-                        contender = n;
-                        contenderMaxDistance = n.distance + 1;
-                        resourceHexesToBeat = n.numResourcesInPath();
-                        return contender;
-                    }
-                    else if (n.distance > contenderMaxDistance) {
-                        return contender;
-                    }
-                    else if (n.numResourcesInPath() > resourceHexesToBeat) {
-                        contender = n;
-                        resourceHexesToBeat = n.numResourcesInPath();
-                    }
-                    continue;
-                }
-                if (!visited.add(n.pt)) {
-                    continue;
-                }
-                validNeighbors(n).stream()
-                    .map(p -> new SearchNode(p, n.distance + 1, n.history.stream().collect(Collectors.toList())))
-                    .forEach(q::add);
-            }
-            return null;
-        }
-        private List<Point3D> validNeighbors(SearchNode n) {
-            return Stream.of(
-                n.pt.add(1, 0, -1),
-                n.pt.add(1, -1, 0),
-                n.pt.add(0, -1, 1),
-                n.pt.add(-1, 0, 1),
-                n.pt.add(-1, 1, 0),
-                n.pt.add(0, 1, -1)
-            )
-            .filter(indices.ptToHexMap::containsKey)
-            .filter(pt -> !n.history.contains(pt))
-            .map(indices::getHex)
-            .filter(h -> h.type != -1)
-            .map(Hex::pt)
-            .collect(Collectors.toList());
+
+        private boolean needToShortCircuit() {
+            return eggSpots.isEmpty()
+                || crystalSpots.size() < 5;
         }
     }
 }